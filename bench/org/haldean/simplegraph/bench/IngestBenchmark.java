@@ -0,0 +1,55 @@
+package org.haldean.simplegraph.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.haldean.simplegraph.GraphConfiguration;
+import org.haldean.simplegraph.GraphFactory;
+import org.haldean.simplegraph.StreamingGraphComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast values can be added to a streaming graph, from one
+ * producer and from several producers at once. The graph is never
+ * shown, so the pending queue is drained by the producers themselves
+ * whenever it fills up, which is included in the measurement.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class IngestBenchmark {
+  private StreamingGraphComponent<Double> graph;
+  private Double value = 0.5;
+
+  @Setup
+  public void setup() {
+    GraphConfiguration config = new GraphConfiguration();
+    graph = GraphFactory.forStreamingData(config);
+    graph.setSampleCount(10000);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void addValueSingleProducer() {
+    graph.addValue(value);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void addValueFourProducers() {
+    graph.addValue(value);
+  }
+}
@@ -0,0 +1,123 @@
+package org.haldean.simplegraph.bench;
+
+import java.awt.Graphics2D;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.haldean.simplegraph.GraphConfiguration;
+import org.haldean.simplegraph.GraphFactory;
+import org.haldean.simplegraph.StaticGraphComponent;
+import org.haldean.simplegraph.StreamingGraphComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to paint one frame of a graph into an offscreen
+ * image. Each frame redraws the data rather than reusing the cached
+ * plot: a value is added to the streaming graph before every frame, as
+ * it would be in use, and the static graph's bounds are set again, so
+ * the static series stays at the size being measured.
+ *
+ * The graphs keep the default frame rate, so adding a value only marks
+ * the graph dirty for the next frame instead of queueing a repaint on
+ * the event dispatch thread; frames are painted by calling paint
+ * directly.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class PaintBenchmark {
+  private static final int WIDTH = 1024;
+  private static final int HEIGHT = 400;
+
+  @Param({"1000", "100000", "10000000"})
+  public int samples;
+
+  @Param({"false", "true"})
+  public boolean inspector;
+
+  private StreamingGraphComponent<Double> streaming;
+  private StaticGraphComponent<Double> staticGraph;
+  private BufferedImage image;
+  private Graphics2D canvas;
+  private double staticMaximum;
+  private int next = 0;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    GraphConfiguration config = new GraphConfiguration();
+    config.setEnableInspector(inspector);
+
+    streaming = GraphFactory.forStreamingData(config);
+    streaming.setSize(WIDTH, HEIGHT);
+    streaming.setSampleCount(samples);
+    double[] values = new double[samples];
+    for (int i = 0; i < samples; i++) {
+      values[i] = sample(i);
+    }
+    streaming.addValues(values, 0, samples);
+
+    staticGraph = GraphFactory.forList(new ArrayList<Double>(), config);
+    staticGraph.setSize(WIDTH, HEIGHT);
+    List<Double> chunk = new ArrayList<Double>();
+    staticMaximum = 1;
+    for (int i = 0; i < samples; i++) {
+      staticMaximum = Math.max(staticMaximum, sample(i));
+      chunk.add(sample(i));
+      if (chunk.size() == 100000 || i == samples - 1) {
+        staticGraph.addValueList(chunk);
+        chunk.clear();
+      }
+    }
+
+    /* Park the mouse in the middle of each graph */
+    streaming.dispatchEvent(new MouseEvent(streaming, MouseEvent.MOUSE_MOVED, 0, 0,
+                                           WIDTH / 2, HEIGHT / 2, 0, false));
+    staticGraph.dispatchEvent(new MouseEvent(staticGraph, MouseEvent.MOUSE_MOVED, 0, 0,
+                                             WIDTH / 2, HEIGHT / 2, 0, false));
+
+    image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    canvas = image.createGraphics();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    canvas.dispose();
+  }
+
+  @Benchmark
+  public BufferedImage paintStreaming() {
+    streaming.addValue(sample(next++));
+    streaming.paint(canvas);
+    return image;
+  }
+
+  @Benchmark
+  public BufferedImage paintStatic() {
+    staticGraph.setMaximum(staticMaximum);
+    staticGraph.paint(canvas);
+    return image;
+  }
+
+  private static double sample(int i) {
+    return Math.sin(i / 500.0) + 0.1 * Math.sin(i / 7.0);
+  }
+}
@@ -0,0 +1,106 @@
+package org.haldean.simplegraph;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * An offscreen image that keeps a layer of a graph between frames, such
+ * as the {@link GraphBackground} or the {@link PlotLayer}. The layer is
+ * only redrawn when its owner reports it stale, when the size changes,
+ * or when the image loses its contents.
+ *
+ * On screen the image is kept in video memory as a {@link VolatileImage},
+ * and is redrawn if its contents are lost. When there is no screen, a
+ * {@link BufferedImage} is used instead.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class CachedImage {
+	/**
+	 * Draws the layer into the cached image.
+	 */
+	interface Renderer {
+		void render(Graphics2D g);
+	}
+
+	private VolatileImage volatileImage;
+	private BufferedImage bufferedImage;
+
+	/* Kept for the life of the buffered image, so redrawing it does not
+	 * create a new graphics object every time */
+	private Graphics2D bufferedGraphics;
+
+	/**
+	 * Paint the layer onto a canvas, asking the renderer to redraw the
+	 * cached image first if it is stale or has lost its contents.
+	 *
+	 * @param component The component being painted
+	 * @param canvas The graphics object to paint onto
+	 * @param width The width of the layer in pixels
+	 * @param height The height of the layer in pixels
+	 * @param stale Whether the owner's layer has changed since the image
+	 * was last drawn
+	 * @param renderer Draws the layer when the image is out of date
+	 */
+	void paint(Component component, Graphics canvas, int width, int height,
+						 boolean stale, Renderer renderer) {
+		GraphicsConfiguration screen = component.getGraphicsConfiguration();
+		if (screen == null || GraphicsEnvironment.isHeadless()) {
+			paintBuffered(canvas, width, height, stale, renderer);
+		} else {
+			paintVolatile(canvas, screen, width, height, stale, renderer);
+		}
+	}
+
+	private void paintBuffered(Graphics canvas, int width, int height,
+														 boolean stale, Renderer renderer) {
+		if (bufferedImage == null || bufferedImage.getWidth() != width ||
+				bufferedImage.getHeight() != height) {
+			if (bufferedGraphics != null) {
+				bufferedGraphics.dispose();
+			}
+			bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			bufferedGraphics = bufferedImage.createGraphics();
+			stale = true;
+		}
+
+		if (stale) {
+			renderer.render(bufferedGraphics);
+		}
+
+		canvas.drawImage(bufferedImage, 0, 0, null);
+	}
+
+	private void paintVolatile(Graphics canvas, GraphicsConfiguration screen, int width, int height,
+														 boolean stale, Renderer renderer) {
+		do {
+			int status = volatileImage == null ?
+				VolatileImage.IMAGE_INCOMPATIBLE : volatileImage.validate(screen);
+
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE ||
+					volatileImage.getWidth() != width || volatileImage.getHeight() != height) {
+				if (volatileImage != null) {
+					volatileImage.flush();
+				}
+				volatileImage = screen.createCompatibleVolatileImage(width, height);
+				stale = true;
+			} else if (status == VolatileImage.IMAGE_RESTORED) {
+				stale = true;
+			}
+
+			if (stale) {
+				Graphics2D g = volatileImage.createGraphics();
+				renderer.render(g);
+				g.dispose();
+				stale = false;
+			}
+
+			canvas.drawImage(volatileImage, 0, 0, null);
+		} while (volatileImage.contentsLost());
+	}
+}
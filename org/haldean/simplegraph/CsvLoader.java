@@ -0,0 +1,449 @@
+package org.haldean.simplegraph;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads one column of numbers from a delimited text file into a
+ * {@link DoubleList}, using every thread of a pool.
+ *
+ * The file is memory-mapped and split into chunks of roughly equal
+ * size, which are parsed in parallel. A line belongs to the chunk its
+ * first byte falls in, so each chunk skips the partial line at its start
+ * and finishes the line running past its end; no line is lost or read
+ * twice, and no pass is needed to find the line boundaries first.
+ *
+ * The chunks are read twice: once to count the values in each, and once
+ * to parse the values straight into their place in a single array.
+ * Nothing but the result is held on the heap, which matters for files of
+ * several gigabytes; the second read comes from the page cache.
+ *
+ * Numbers are parsed straight from the mapped bytes. Decimals with at
+ * most fifteen or so significant digits and a modest exponent, which is
+ * nearly everything found in an export, are converted exactly with a
+ * single floating-point multiply or divide. Anything else, such as
+ * "NaN" or a very long mantissa, falls back to
+ * {@link Double#parseDouble(String)}.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class CsvLoader {
+	/* Files are split into a few chunks per thread, so that a thread that
+	 * finishes early can take another */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/* Chunks are never smaller than this, so small files are not split */
+	private static final long MIN_CHUNK = 1 << 20;
+
+	/* Chunks are never larger than this, so a chunk and the line running
+	 * past its end fit in a single mapping */
+	private static final long MAX_CHUNK = 1 << 30;
+
+	/* The longest line the loader accepts */
+	private static final int MAX_LINE = 1 << 20;
+
+	/* The powers of ten that are exactly representable as doubles */
+	private static final double[] POWERS = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private CsvLoader() {
+		;
+	}
+
+	/**
+	 * Read one column of a delimited text file.
+	 *
+	 * @param file The file to read.
+	 * @param column The index of the column to read, where zero is the
+	 * first.
+	 * @param options How the file is laid out and the pool to parse it on.
+	 * @return The values of the column, in file order.
+	 * @throws IOException If the file cannot be read, or a line without a
+	 * number in the column is found.
+	 */
+	static DoubleList load(Path file, final int column, CsvOptions options) throws IOException {
+		if (column < 0) {
+			throw new IllegalArgumentException("Negative column " + column);
+		}
+
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			final long length = channel.size();
+			final long dataStart = skipLines(channel, options.getHeaderLines());
+			final char delimiter = options.getDelimiter();
+
+			long dataLength = length - dataStart;
+			long chunks = Math.min((long) options.getPool().getParallelism() * CHUNKS_PER_THREAD,
+														 dataLength / MIN_CHUNK);
+			chunks = Math.max(chunks, (dataLength + MAX_CHUNK - 1) / MAX_CHUNK);
+			chunks = Math.max(chunks, 1);
+
+			final long[] bounds = new long[(int) chunks + 1];
+			for (int i = 0; i <= chunks; i++) {
+				bounds[i] = dataStart + dataLength * i / chunks;
+			}
+
+			final int[] counts = new int[(int) chunks];
+			runChunks(options.getPool(), counts.length, new ChunkTask() {
+					public void run(int chunk) throws IOException {
+						counts[chunk] = parseChunk(channel, length, dataStart, bounds[chunk],
+																			 bounds[chunk + 1], column, delimiter, null, 0);
+					}
+				});
+
+			long total = 0;
+			for (int i = 0; i < counts.length; i++) {
+				total += counts[i];
+			}
+			if (total > Integer.MAX_VALUE - 8) {
+				throw new IOException(file + " holds " + total +
+															" values, more than a graph can index");
+			}
+
+			/* Each chunk parses into the array after the chunks before it */
+			final int[] offsets = new int[counts.length];
+			for (int i = 1; i < counts.length; i++) {
+				offsets[i] = offsets[i - 1] + counts[i - 1];
+			}
+
+			final double[] values = new double[(int) total];
+			runChunks(options.getPool(), counts.length, new ChunkTask() {
+					public void run(int chunk) throws IOException {
+						parseChunk(channel, length, dataStart, bounds[chunk], bounds[chunk + 1],
+											 column, delimiter, values, offsets[chunk]);
+					}
+				});
+			return new DoubleList(values, values.length);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Work done on one chunk of the file.
+	 */
+	private interface ChunkTask {
+		void run(int chunk) throws IOException;
+	}
+
+	/**
+	 * Run a task for every chunk on a pool, and wait for all of them. If
+	 * a task fails, the tasks that have not started yet do nothing, and
+	 * the ones already running are waited for, so that none is still
+	 * reading the file when this returns.
+	 *
+	 * @param pool The pool to run on.
+	 * @param chunks The number of chunks.
+	 * @param task The task to run for each chunk.
+	 * @throws IOException The first error a task threw, if any.
+	 */
+	private static void runChunks(ForkJoinPool pool, int chunks, final ChunkTask task)
+		throws IOException {
+		final CountDownLatch finished = new CountDownLatch(chunks);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int i = 0; i < chunks; i++) {
+			final int chunk = i;
+			pool.execute(new Runnable() {
+					public void run() {
+						try {
+							if (failure.get() == null) {
+								task.run(chunk);
+							}
+						} catch (Throwable t) {
+							failure.compareAndSet(null, t);
+						} finally {
+							finished.countDown();
+						}
+					}
+				});
+		}
+
+		/* Let the pool start a spare thread if this is one of its own */
+		boolean interrupted = false;
+		while (true) {
+			try {
+				ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+						public boolean block() throws InterruptedException {
+							finished.await();
+							return true;
+						}
+
+						public boolean isReleasable() {
+							return finished.getCount() == 0;
+						}
+					});
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		Throwable t = failure.get();
+		if (t instanceof IOException) {
+			throw (IOException) t;
+		} else if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		}
+	}
+
+	/**
+	 * Find the position just after a number of lines at the start of a
+	 * file.
+	 */
+	private static long skipLines(FileChannel channel, int lines) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		long position = 0;
+		while (lines > 0) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				break;
+			}
+			for (int i = 0; i < read && lines > 0; i++) {
+				position++;
+				if (buffer.get(i) == '\n') {
+					lines--;
+				}
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * Parse the lines that start between two positions of a file.
+	 *
+	 * @param channel The file.
+	 * @param length The length of the file.
+	 * @param dataStart The position of the first line after the header,
+	 * which is known to start a line.
+	 * @param from The position of the start of the chunk.
+	 * @param to The position just after the end of the chunk.
+	 * @param column The index of the column to read.
+	 * @param delimiter The character that separates fields.
+	 * @param values The array to parse the values into, or null to only
+	 * count them.
+	 * @param offset The index in the array of the chunk's first value.
+	 * @return The number of values in the chunk.
+	 */
+	private static int parseChunk(FileChannel channel, long length, long dataStart,
+																long from, long to, int column, char delimiter,
+																double[] values, int offset)
+		throws IOException {
+		/* Map the byte before the chunk too, to tell whether the chunk
+		 * starts a line */
+		long mapStart = from > dataStart ? from - 1 : from;
+		long mapEnd = Math.min(length, to + MAX_LINE);
+		ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+		int limit = bytes.limit();
+		int end = (int) (to - mapStart);
+
+		int p = 0;
+		if (from > dataStart) {
+			/* A line that starts before the chunk belongs to the chunk before */
+			while (p < limit && bytes.get(p) != '\n') {
+				p++;
+			}
+			p++;
+		}
+
+		int count = 0;
+		while (p < end) {
+			int lineEnd = p;
+			while (lineEnd < limit && bytes.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			if (lineEnd == limit && mapEnd < length) {
+				throw new IOException("The line at byte " + (mapStart + p) +
+															" is longer than " + MAX_LINE + " bytes");
+			}
+
+			/* Every line that is not blank holds a value, or is an error
+			 * that the parse will report */
+			if (values == null) {
+				if (!isBlank(bytes, p, lineEnd)) {
+					count++;
+				}
+				p = lineEnd + 1;
+				continue;
+			}
+
+			/* Skip to the start of the column */
+			int fieldStart = p;
+			int field = 0;
+			while (field < column && fieldStart < lineEnd) {
+				if (bytes.get(fieldStart++) == delimiter) {
+					field++;
+				}
+			}
+			int fieldEnd = fieldStart;
+			while (fieldEnd < lineEnd && bytes.get(fieldEnd) != delimiter) {
+				fieldEnd++;
+			}
+
+			/* Trim spaces, carriage returns and quotes from the field */
+			while (fieldStart < fieldEnd && isPadding(bytes.get(fieldStart))) {
+				fieldStart++;
+			}
+			while (fieldEnd > fieldStart && isPadding(bytes.get(fieldEnd - 1))) {
+				fieldEnd--;
+			}
+
+			if (field == column && fieldStart < fieldEnd) {
+				values[offset + count++] = parseDouble(bytes, fieldStart, fieldEnd, mapStart);
+			} else if (!isBlank(bytes, p, lineEnd)) {
+				throw new IOException("The line at byte " + (mapStart + p) +
+															" has no value in column " + column);
+			}
+			p = lineEnd + 1;
+		}
+		return count;
+	}
+
+	private static boolean isPadding(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '"';
+	}
+
+	private static boolean isBlank(ByteBuffer bytes, int from, int to) {
+		for (int i = from; i < to; i++) {
+			byte b = bytes.get(i);
+			if (b != ' ' && b != '\t' && b != '\r') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parse a decimal number from a run of bytes.
+	 *
+	 * @param bytes The buffer holding the number.
+	 * @param start The index of the first byte of the number.
+	 * @param end The index just after the last byte of the number.
+	 * @param offset The position of the buffer in the file, for errors.
+	 */
+	private static double parseDouble(ByteBuffer bytes, int start, int end, long offset)
+		throws IOException {
+		int p = start;
+		boolean negative = false;
+		byte sign = bytes.get(p);
+		if (sign == '-' || sign == '+') {
+			negative = sign == '-';
+			p++;
+		}
+
+		/* Gather up to 18 significant digits, which always fit in a long,
+		 * and the power of ten to scale them by */
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean exact = true;
+		boolean anyDigits = false;
+		for (; p < end; p++) {
+			int digit = bytes.get(p) - '0';
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+			anyDigits = true;
+			if (digits < 18) {
+				mantissa = 10 * mantissa + digit;
+				if (mantissa != 0) {
+					digits++;
+				}
+			} else {
+				exponent++;
+				exact &= digit == 0;
+			}
+		}
+		if (p < end && bytes.get(p) == '.') {
+			for (p++; p < end; p++) {
+				int digit = bytes.get(p) - '0';
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+				anyDigits = true;
+				if (digits < 18) {
+					mantissa = 10 * mantissa + digit;
+					if (mantissa != 0) {
+						digits++;
+					}
+					exponent--;
+				} else {
+					exact &= digit == 0;
+				}
+			}
+		}
+		if (anyDigits && p < end && (bytes.get(p) == 'e' || bytes.get(p) == 'E')) {
+			p++;
+			boolean negativeExponent = false;
+			if (p < end && (bytes.get(p) == '-' || bytes.get(p) == '+')) {
+				negativeExponent = bytes.get(p) == '-';
+				p++;
+			}
+			int written = 0;
+			boolean anyExponentDigits = false;
+			for (; p < end; p++) {
+				int digit = bytes.get(p) - '0';
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+				anyExponentDigits = true;
+				if (written < 100000) {
+					written = 10 * written + digit;
+				}
+			}
+			if (!anyExponentDigits) {
+				return parseSlowly(bytes, start, end, offset);
+			}
+			exponent += negativeExponent ? -written : written;
+		}
+
+		if (!anyDigits || p != end) {
+			return parseSlowly(bytes, start, end, offset);
+		}
+
+		/* Both the mantissa and the power of ten are exact doubles, so one
+		 * multiply or divide gives the correctly rounded result */
+		double value;
+		if (mantissa == 0) {
+			value = 0;
+		} else if (exact && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+			value = exponent >= 0 ? mantissa * POWERS[exponent] : mantissa / POWERS[-exponent];
+		} else {
+			return parseSlowly(bytes, start, end, offset);
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse a number the fast path cannot, through a string.
+	 */
+	private static double parseSlowly(ByteBuffer bytes, int start, int end, long offset)
+		throws IOException {
+		byte[] text = new byte[end - start];
+		for (int i = 0; i < text.length; i++) {
+			text[i] = bytes.get(start + i);
+		}
+		String number = new String(text, StandardCharsets.ISO_8859_1);
+		try {
+			return Double.parseDouble(number);
+		} catch (NumberFormatException e) {
+			throw new IOException("\"" + number + "\" at byte " + (offset + start) +
+														" is not a number");
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package org.haldean.simplegraph;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A data object that describes how to read a delimited text file, such
+ * as a CSV export, for {@link GraphFactory#forCsv}.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public class CsvOptions {
+	private char delimiter = ',';
+	private int headerLines = 0;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * Create a {@link CsvOptions} for comma-separated files with no
+	 * header, parsed on the common fork-join pool.
+	 */
+	public CsvOptions() {
+		;
+	}
+
+	/**
+	 * Get the character that separates fields.
+	 */
+	public char getDelimiter() {
+		return delimiter;
+	}
+
+	/**
+	 * Set the character that separates fields, such as ',' or '\t'.
+	 *
+	 * @param delimiter The field separator.
+	 */
+	public void setDelimiter(char delimiter) {
+		if (delimiter == '\n' || delimiter == '\r' || delimiter >= 0x80) {
+			throw new IllegalArgumentException("Invalid delimiter " + (int) delimiter);
+		}
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Get the number of lines skipped at the start of the file.
+	 */
+	public int getHeaderLines() {
+		return headerLines;
+	}
+
+	/**
+	 * Set the number of lines at the start of the file that hold headers
+	 * rather than values.
+	 *
+	 * @param lines The number of lines to skip.
+	 */
+	public void setHeaderLines(int lines) {
+		if (lines < 0) {
+			throw new IllegalArgumentException("Negative header line count");
+		}
+		headerLines = lines;
+	}
+
+	/**
+	 * Get the pool the file is parsed on.
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Set the pool the file is parsed on. The file is split into a few
+	 * chunks per thread in the pool.
+	 *
+	 * @param pool The pool to parse on.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+}
@@ -0,0 +1,78 @@
+package org.haldean.simplegraph;
+
+/**
+ * A growable list of primitive doubles. Values are stored in a single
+ * array, so reading them by index is constant-time and never unboxes.
+ *
+ * This class is not thread-safe; callers are expected to hold a lock
+ * on the list while they use it.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class DoubleList extends SampleSeries {
+	private double[] values;
+	private int size = 0;
+
+	/**
+	 * Create a new, empty {@link DoubleList}.
+	 */
+	DoubleList() {
+		values = new double[16];
+	}
+
+	/**
+	 * Create a {@link DoubleList} that takes over an array of values
+	 * without copying it.
+	 *
+	 * @param values The array holding the values.
+	 * @param size The number of values at the start of the array.
+	 */
+	DoubleList(double[] values, int size) {
+		this.values = values;
+		this.size = size;
+	}
+
+	/**
+	 * Get the number of values in the list.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Append a value to the end of the list.
+	 *
+	 * @param value The value to append.
+	 */
+	void add(double value) {
+		ensureCapacity(size + 1);
+		values[size++] = value;
+	}
+
+	/**
+	 * Get a value by its index.
+	 *
+	 * @param i The index of the value.
+	 */
+	double get(int i) {
+		return values[i];
+	}
+
+	long memoryFootprint() {
+		return 8L * values.length;
+	}
+
+	/**
+	 * Grow the backing array so it can hold at least the given number
+	 * of values without reallocating.
+	 *
+	 * @param capacity The number of values to make room for.
+	 */
+	void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			double[] grown = new double[Math.max(capacity, values.length * 2)];
+			System.arraycopy(values, 0, grown, 0, size);
+			values = grown;
+		}
+	}
+}
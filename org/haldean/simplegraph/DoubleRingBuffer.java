@@ -0,0 +1,208 @@
+package org.haldean.simplegraph;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A fixed-capacity ring buffer of primitive doubles. Once the buffer
+ * is full, each new value overwrites the oldest one, so appending never
+ * allocates and never has to shift the stored values.
+ *
+ * This class is not thread-safe; callers are expected to hold a lock
+ * on the buffer while they use it.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class DoubleRingBuffer {
+	private double[] values;
+
+	/* The physical index of the oldest value in the buffer */
+	private int head = 0;
+
+	/* The number of values currently stored */
+	private int size = 0;
+
+	/**
+	 * Create a new, empty {@link DoubleRingBuffer}.
+	 *
+	 * @param capacity The maximum number of values retained.
+	 */
+	DoubleRingBuffer(int capacity) {
+		values = new double[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Get the number of values stored in the buffer.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Get the maximum number of values the buffer retains.
+	 */
+	int capacity() {
+		return values.length;
+	}
+
+	/**
+	 * Append a value, discarding the oldest value if the buffer is
+	 * full.
+	 *
+	 * @param value The value to append.
+	 */
+	void add(double value) {
+		int tail = head + size;
+		if (tail >= values.length) {
+			tail -= values.length;
+		}
+		values[tail] = value;
+
+		if (size < values.length) {
+			size++;
+		} else if (++head == values.length) {
+			head = 0;
+		}
+	}
+
+	/**
+	 * Append a run of values, discarding the oldest values if the buffer
+	 * overflows. The values are copied in at most two block copies.
+	 *
+	 * @param source The array holding the values to append.
+	 * @param offset The index of the first value in the array.
+	 * @param length The number of values to append.
+	 */
+	void add(double[] source, int offset, int length) {
+		/* Anything older than the last capacity values would be
+		 * overwritten straight away, so skip it */
+		if (length > values.length) {
+			offset += length - values.length;
+			length = values.length;
+		}
+
+		int tail = head + size;
+		if (tail >= values.length) {
+			tail -= values.length;
+		}
+
+		int firstRun = Math.min(length, values.length - tail);
+		System.arraycopy(source, offset, values, tail, firstRun);
+		System.arraycopy(source, offset + firstRun, values, 0, length - firstRun);
+		advance(length);
+	}
+
+	/**
+	 * Append the remaining values of a buffer, discarding the oldest
+	 * values if the ring buffer overflows. The source buffer's position
+	 * is advanced past every value it held.
+	 *
+	 * @param source The buffer holding the values to append.
+	 */
+	void add(DoubleBuffer source) {
+		int length = source.remaining();
+		if (length > values.length) {
+			source.position(source.position() + length - values.length);
+			length = values.length;
+		}
+
+		int tail = head + size;
+		if (tail >= values.length) {
+			tail -= values.length;
+		}
+
+		int firstRun = Math.min(length, values.length - tail);
+		source.get(values, tail, firstRun);
+		source.get(values, 0, length - firstRun);
+		advance(length);
+	}
+
+	/**
+	 * Account for values written after the tail of the buffer.
+	 *
+	 * @param length The number of values written.
+	 */
+	private void advance(int length) {
+		int grown = Math.min(length, values.length - size);
+		size += grown;
+		head += length - grown;
+		if (head >= values.length) {
+			head -= values.length;
+		}
+	}
+
+	/**
+	 * Get a value by its logical index.
+	 *
+	 * @param i The index of the value, where zero is the oldest value
+	 * in the buffer.
+	 */
+	double get(int i) {
+		int index = head + i;
+		if (index >= values.length) {
+			index -= values.length;
+		}
+		return values[index];
+	}
+
+	/**
+	 * Copy every value in the buffer, oldest first, to the start of an
+	 * array.
+	 *
+	 * @param destination The array to copy into. Must hold at least
+	 * {@link #size()} values.
+	 */
+	void copyTo(double[] destination) {
+		copyTo(0, destination, 0, size);
+	}
+
+	/**
+	 * Copy a run of values, oldest first, into an array.
+	 *
+	 * @param from The logical index of the first value to copy.
+	 * @param destination The array to copy into.
+	 * @param offset The index in the array to copy the first value to.
+	 * @param length The number of values to copy.
+	 */
+	void copyTo(int from, double[] destination, int offset, int length) {
+		int start = head + from;
+		if (start >= values.length) {
+			start -= values.length;
+		}
+
+		int firstRun = Math.min(length, values.length - start);
+		System.arraycopy(values, start, destination, offset, firstRun);
+		System.arraycopy(values, 0, destination, offset + firstRun, length - firstRun);
+	}
+
+	/**
+	 * Remove every value from the buffer.
+	 */
+	void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Change the capacity of the buffer. If the buffer holds more
+	 * values than the new capacity, only the most recent values are
+	 * kept.
+	 *
+	 * @param capacity The new capacity.
+	 */
+	void resize(int capacity) {
+		capacity = Math.max(1, capacity);
+		if (capacity == values.length) {
+			return;
+		}
+
+		int kept = Math.min(size, capacity);
+		double[] resized = new double[capacity];
+		for (int i = 0; i < kept; i++) {
+			resized[i] = get(size - kept + i);
+		}
+
+		values = resized;
+		head = 0;
+		size = kept;
+	}
+}
@@ -0,0 +1,819 @@
+package org.haldean.simplegraph;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.util.List;
+import javax.management.JMException;
+import javax.swing.JComponent;
+
+/**
+ *  A component which draws a graph when provided with a list of
+ *  precomputed values. The graph automatically scales along the X and
+ *  Y axes.
+ *
+ *  By default the whole series is shown. A narrower viewport can be
+ *  chosen with {@link #setViewport(int, int)}, by dragging the graph to
+ *  pan, or with the mouse wheel to zoom; only the samples inside the
+ *  viewport are read while drawing.
+ *
+ *  Samples are added as primitive doubles, so adding them allocates
+ *  nothing per sample. {@link StaticGraphComponent} and
+ *  {@link LongStaticGraphComponent} accept other kinds of numbers on top
+ *  of this class.
+ *
+ *  The graph paints every pixel of its bounds, so it is opaque and Swing
+ *  never paints whatever is behind it. Moving the inspector repaints
+ *  only the area of the old and new inspector.
+ *
+ *  @author Will Brown (will.h.brown@gmail.com)
+ */
+public class DoubleStaticGraphComponent extends JComponent {
+	private SampleSeries series;
+
+	/* The bounds set with setMaximum and setMinimum. The graph is
+	 * widened to fit the samples it draws on top of these */
+	private double maximum = 1;
+	private double minimum = -1;
+
+	private int width;
+	private int height;
+
+	/* Area left at the top and bottom to ensure the graph never quite
+	 * touches the edge, as a percentage of the value range */
+	private double margin = 0.1;
+
+	/* The configuration object that holds the color, font and name of
+	 * the graph */
+	private GraphConfiguration config;
+
+	/* The currently-moused-over x-value */
+	private int currentFocusVertical;
+
+	/* The sample the inspector was last drawn on, or -1 */
+	private int inspectedSample = -1;
+
+	/* Formats the inspector labels without allocating */
+	private final LabelFormatter labels = new LabelFormatter();
+
+	/* The cached background, axis, ticks and label */
+	private GraphBackground background = new GraphBackground();
+
+	/* The cached background and data, which the inspector is drawn over.
+	 * The version is bumped whenever the data, bounds or viewport change,
+	 * and the plot is only redrawn when it does */
+	private PlotLayer plotLayer = new PlotLayer();
+	private long plotVersion = 0;
+
+	/* The version the plot was last painted in full with. Paints of part
+	 * of the graph, such as the area behind the inspector, keep to this
+	 * version so they match the rest of the screen */
+	private long paintedVersion = -1;
+
+	/* The clip of the graphics being painted, read without allocating */
+	private final Rectangle clipBounds = new Rectangle();
+
+	private final CachedImage.Renderer plotRenderer = new CachedImage.Renderer() {
+			public void render(Graphics2D g) {
+				paintPlot(g);
+			}
+		};
+
+	/* Reduces the series to one entry per pixel column when the series
+	 * is much larger than the graph is wide */
+	private M4Decimator decimator = new M4Decimator();
+
+	/* A min/max index over the series, so decimating a long series does
+	 * not read every sample. It is extended once per frame rather than
+	 * once per add, so samples added between frames are indexed in one
+	 * pass */
+	private SeriesPyramid pyramid = new SeriesPyramid();
+
+	/* The most samples read on the painting thread for one frame, either
+	 * to extend the index or to decimate without it */
+	private static final int SCAN_LIMIT = 1 << 20;
+
+	/* The samples read from each column of a preview, drawn while a long
+	 * series is indexed */
+	private static final int PREVIEW_READS = 4;
+
+	/* Whether the index is being extended on a background thread.
+	 * Guarded by the series lock */
+	private boolean indexing = false;
+
+	/* The points of the polyline drawn each frame, reused between
+	 * frames */
+	private int[] xs = new int[0];
+	private int[] ys = new int[0];
+
+	/* The range of samples shown on the graph. A viewEnd of -1 shows the
+	 * whole series, including values added later */
+	private int viewStart = 0;
+	private int viewEnd = -1;
+
+	/* The smallest number of samples a viewport can be zoomed in to */
+	private static final int MINIMUM_VIEW_SIZE = 2;
+
+	/* How much one notch of the mouse wheel zooms by */
+	private static final double ZOOM_STEP = 1.25;
+
+	/* The bounds and scale factors of the current frame */
+	private int frameStart;
+	private int frameEnd;
+	private double frameMaximum;
+	private double frameMinimum;
+	private double pixelsPerUnit;
+	private double pixelsPerSample;
+	private int frameY0;
+
+	/* Performance counters, or null unless enabled with enableMetrics */
+	private volatile GraphMetrics metrics;
+
+	/**
+	 * Create a new {@link DoubleStaticGraphComponent} with the default
+	 * {@link GraphConfiguration}.
+	 */
+	public DoubleStaticGraphComponent() {
+		this(new GraphConfiguration());
+	}
+
+	/**
+	 * Create a new {@link DoubleStaticGraphComponent} with the specified
+	 * {@link GraphConfiguration}.
+	 *
+	 * @param gc The {@link GraphConfiguration} to use.
+	 */
+	public DoubleStaticGraphComponent(GraphConfiguration gc) {
+		this(new DoubleList(), gc);
+	}
+
+	/**
+	 * Create a new {@link DoubleStaticGraphComponent} that draws an existing
+	 * series of samples.
+	 *
+	 * @param source The samples to draw.
+	 * @param gc The {@link GraphConfiguration} to use.
+	 */
+	DoubleStaticGraphComponent(SampleSeries source, GraphConfiguration gc) {
+		series = source;
+		config = gc;
+		setOpaque(true);
+		setDoubleBuffered(true);
+		addComponentListener(new ComponentAdapter() {
+				public void componentResized(ComponentEvent e) {
+					Dimension size = getSize();
+					width = (int) size.getWidth();
+					height = (int) size.getHeight();
+					repaint();
+				}
+			});
+		GraphMouseHandler mouseHandler = new GraphMouseHandler();
+		addMouseListener(mouseHandler);
+		addMouseMotionListener(mouseHandler);
+		addMouseWheelListener(mouseHandler);
+	}
+
+	/**
+	 * Manually set the maximum. Note that if a data point larger than this
+	 * maximum is added, the graph will automatically scale. This sets a lower
+	 * bound on the actual maximum of the graph.
+	 *
+	 * @param max The lower bound for the maximum
+	 */
+	public void setMaximum(double max) {
+		synchronized (series) {
+			maximum = max;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Manually set the minimum. Note that if a data point smaller than this
+	 * minimum is added, the graph will automatically scale. This sets an upper
+	 * bound on the actual minimum of the graph.
+	 *
+	 * @param min The upper bound for the minimum
+	 */
+	public void setMinimum(double min) {
+		synchronized (series) {
+			minimum = min;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Set the {@link GraphConfiguration} of the graph.
+	 *
+	 * @param gc The configuration to assign.
+	 */
+	public void setGraphConfiguration(GraphConfiguration gc) {
+		config = gc;
+	}
+
+	/**
+	 * Get the {@link GraphConfiguration} of this component.
+	 */
+	public GraphConfiguration getGraphConfiguration() {
+		return config;
+	}
+
+	/**
+	 * Show only a range of the series on the graph. The range is clamped
+	 * to the samples in the series when the graph is drawn.
+	 *
+	 * @param start The index of the first sample to show.
+	 * @param end The index just after the last sample to show.
+	 */
+	public void setViewport(int start, int end) {
+		if (start < 0 || end - start < 1) {
+			throw new IllegalArgumentException(
+				"Invalid viewport [" + start + ", " + end + ")");
+		}
+
+		synchronized (series) {
+			viewStart = start;
+			viewEnd = end;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Show the whole series on the graph again, including any values
+	 * added later.
+	 */
+	public void resetViewport() {
+		synchronized (series) {
+			viewStart = 0;
+			viewEnd = -1;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Get the index of the first sample shown on the graph.
+	 */
+	public int getViewportStart() {
+		synchronized (series) {
+			return Math.min(viewStart, series.size());
+		}
+	}
+
+	/**
+	 * Get the index just after the last sample shown on the graph.
+	 */
+	public int getViewportEnd() {
+		synchronized (series) {
+			return viewEnd < 0 ? series.size() : Math.min(viewEnd, series.size());
+		}
+	}
+
+	/**
+	 * Add a value to the data series and refresh the graph.
+	 *
+	 * @param value The value to add
+	 * @throws UnsupportedOperationException If the graph draws a
+	 * read-only series, such as a memory-mapped file.
+	 */
+	public void addValue(double value) {
+		/* Create a lock on the series list */
+		long start = lockRequested();
+		synchronized (series) {
+			lockAcquired(start);
+			series.add(value);
+			plotVersion++;
+		}
+
+		samplesAdded(1);
+	}
+
+	/**
+	 * Add a batch of values to the data series and refresh the graph
+	 * once.
+	 *
+	 * @param values The array holding the values to add.
+	 * @param off The index of the first value to add.
+	 * @param len The number of values to add.
+	 * @throws UnsupportedOperationException If the graph draws a
+	 * read-only series, such as a memory-mapped file.
+	 */
+	public void addValues(double[] values, int off, int len) {
+		if (off < 0 || len < 0 || off + len > values.length) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		long start = lockRequested();
+		synchronized (series) {
+			lockAcquired(start);
+			for (int i = off; i < off + len; i++) {
+				series.add(values[i]);
+			}
+			plotVersion++;
+		}
+		samplesAdded(len);
+	}
+
+	/**
+	 * Add a batch of whole numbers to the data series, converting each
+	 * to a double as it is stored, for {@link LongStaticGraphComponent}.
+	 *
+	 * @param values The array holding the values to add.
+	 * @param off The index of the first value to add.
+	 * @param len The number of values to add.
+	 */
+	void addLongs(long[] values, int off, int len) {
+		if (off < 0 || len < 0 || off + len > values.length) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		long start = lockRequested();
+		synchronized (series) {
+			lockAcquired(start);
+			for (int i = off; i < off + len; i++) {
+				series.add(values[i]);
+			}
+			plotVersion++;
+		}
+		samplesAdded(len);
+	}
+
+	/**
+	 * Add a list of boxed values to the data series, for the generic
+	 * adapters.
+	 *
+	 * @param values The values to add.
+	 */
+	void addNumbers(List<? extends Number> values) {
+		long start = lockRequested();
+		synchronized (series) {
+			lockAcquired(start);
+			for (Number value : values) {
+				series.add(value.doubleValue());
+			}
+			plotVersion++;
+		}
+		samplesAdded(values.size());
+	}
+
+	/**
+	 * Start timing a producer's wait for the series lock, if metrics are
+	 * enabled.
+	 *
+	 * @return The time the wait started, to pass to lockAcquired.
+	 */
+	private long lockRequested() {
+		return metrics == null ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Record how long a producer waited for the series lock, which is
+	 * held for the whole of a paint. Called just after the lock is taken.
+	 *
+	 * @param start The time returned by lockRequested.
+	 */
+	private void lockAcquired(long start) {
+		GraphMetrics m = metrics;
+		if (m != null && start != 0) {
+			m.producerBlocked(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Count newly added samples and schedule a repaint for the next
+	 * frame. This is safe to call from any thread, and many calls within
+	 * one frame result in a single repaint.
+	 *
+	 * @param count The number of samples added.
+	 */
+	private void samplesAdded(int count) {
+		boolean scheduled = RenderScheduler.repaint(this, config.getTargetFrameRate());
+
+		GraphMetrics m = metrics;
+		if (m != null) {
+			m.samplesIngested(count);
+			if (!scheduled) {
+				m.repaintCoalesced();
+			}
+		}
+	}
+
+	/**
+	 * Start collecting performance metrics for this graph, and publish
+	 * them as a JMX MBean. Calling this again returns the same metrics.
+	 *
+	 * @param name The name of the graph in the MBean's object name.
+	 * @return The metrics of this graph.
+	 * @throws JMException If the MBean cannot be registered.
+	 */
+	public synchronized GraphMetrics enableMetrics(String name) throws JMException {
+		if (metrics == null) {
+			metrics = new GraphMetrics(name);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Stop collecting performance metrics, and unregister the MBean.
+	 *
+	 * @throws JMException If the MBean cannot be unregistered.
+	 */
+	public synchronized void disableMetrics() throws JMException {
+		if (metrics != null) {
+			metrics.unregister();
+			metrics = null;
+		}
+	}
+
+	/**
+	 * Convert a value to a canvas pixel location, using the scale
+	 * computed at the start of the current frame.
+	 *
+	 * @param p The sample value
+	 * @return The number of pixels between the top of the graph and the
+	 * horizontal line representing the given sample value
+	 */
+	private int pointToY(double p) {
+		return (int) ((frameMaximum - (1 - margin) * p) * pixelsPerUnit);
+	}
+
+	/**
+	 * Convert a time-index to a canvas pixel location, using the scale
+	 * computed at the start of the current frame.
+	 *
+	 * @param x The time index
+	 * @return The pixel X corresponding to that time index
+	 */
+	private int pointToX(int x) {
+		/* Relative to the viewport, so a deep zoom into a long series
+		 * does not overflow */
+		return GraphBackground.clampPixel((long) ((x - frameStart) * pixelsPerSample));
+	}
+
+	/**
+	 * Paints the graph onto the provided graphics object. The background
+	 * and data come from the cached plot, which is only redrawn when
+	 * something other than the inspector has changed.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	public void paint(Graphics canvas) {
+		GraphMetrics m = metrics;
+		long paintStart = m == null ? 0 : System.nanoTime();
+
+		/* A graph painted without ever being shown, such as by a batch
+		 * renderer, never gets a resize event, so take the size from the
+		 * component itself */
+		width = getWidth();
+		height = getHeight();
+
+		/* Create a lock on the series list so that the series
+		 * cannot be updated while we are drawing */
+		synchronized (series) {
+			if (GraphBackground.clipCovers(canvas, clipBounds, width, height)) {
+				paintedVersion = plotVersion;
+			}
+			plotLayer.paint(this, canvas, config, width, height, paintedVersion, plotRenderer);
+
+			if (config.getEnableInspector()) {
+				paintInspector(canvas);
+			}
+
+			if (m != null) {
+				m.seriesSize(series.size(), series.memoryFootprint() + pyramid.memoryFootprint());
+			}
+		}
+
+		if (m != null) {
+			m.painted(System.nanoTime() - paintStart);
+		}
+	}
+
+	/**
+	 * Bring the index up to date for a frame. If that would read too
+	 * many samples, such as on the first frame of a large mapped file,
+	 * the index is instead extended on a background thread, which
+	 * repaints the graph when it is done. Must be called with the series
+	 * lock held.
+	 *
+	 * @return Whether the index covers the whole series.
+	 */
+	private boolean updateIndex() {
+		if (indexing) {
+			return false;
+		}
+		if (series.size() - pyramid.indexed() <= SCAN_LIMIT) {
+			pyramid.update(series);
+			return true;
+		}
+
+		indexing = true;
+		Thread indexer = new Thread(new Runnable() {
+				public void run() {
+					index();
+				}
+			}, "DoubleStaticGraphComponent indexer");
+		indexer.setDaemon(true);
+		indexer.start();
+		return false;
+	}
+
+	/**
+	 * Extend the index to the end of the series, taking the series lock
+	 * for one block of samples at a time so that producers and painting
+	 * are only held up briefly.
+	 */
+	private void index() {
+		while (true) {
+			synchronized (series) {
+				pyramid.update(series, pyramid.indexed() + SCAN_LIMIT);
+				if (pyramid.indexed() == series.size()) {
+					indexing = false;
+					plotVersion++;
+					break;
+				}
+			}
+		}
+		repaint();
+	}
+
+	/**
+	 * Paints the background and the samples inside the viewport, and
+	 * records the bounds and scale of the frame for the inspector. Must
+	 * be called with the series lock held.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	private void paintPlot(Graphics canvas) {
+		int size = series.size();
+		frameEnd = viewEnd < 0 ? size : Math.min(viewEnd, size);
+		frameStart = Math.min(viewStart, Math.max(0, frameEnd - 1));
+		int visible = frameEnd - frameStart;
+		boolean decimate = config.getEnableDecimation() && visible > 2 * width;
+
+		/* Widen the bounds to fit the samples being drawn. When the
+		 * series is decimated, the column extremes already hold them */
+		frameMaximum = maximum;
+		frameMinimum = minimum;
+		if (decimate) {
+			if (updateIndex()) {
+				decimator.decimate(series, pyramid, frameStart, frameEnd, width);
+			} else if (visible <= SCAN_LIMIT) {
+				decimator.decimate(series, null, frameStart, frameEnd, width);
+			} else {
+				decimator.preview(series, frameStart, frameEnd, width, PREVIEW_READS);
+			}
+			for (int x = 0; x < decimator.columns(); x++) {
+				frameMaximum = Math.max(frameMaximum, decimator.maximum(x));
+				frameMinimum = Math.min(frameMinimum, decimator.minimum(x));
+			}
+		} else {
+			for (int i = frameStart; i < frameEnd; i++) {
+				double value = series.get(i);
+				frameMaximum = Math.max(frameMaximum, value);
+				frameMinimum = Math.min(frameMinimum, value);
+			}
+		}
+
+		/* Hoist the scale factors out of the drawing loops */
+		pixelsPerUnit = height / (frameMaximum - frameMinimum);
+		pixelsPerSample = (double) width / visible;
+
+		/* The Y component of the X axis can shift based on scaling, so
+		 * we calculate it once to save computation */
+		frameY0 = pointToY(0);
+
+		/* Background, border, axis, ticks and label */
+		background.paint(this, canvas, config, width, height, frameY0,
+										 frameStart, visible);
+
+		canvas.setFont(config.getLabelFont());
+		canvas.setColor(config.getLineColor());
+
+		if (decimate) {
+			paintDecimated(canvas);
+		} else if (visible > 0) {
+			ensurePolylineCapacity(visible);
+			for (int i = 0; i < visible; i++) {
+				xs[i] = pointToX(frameStart + i);
+				ys[i] = pointToY(series.get(frameStart + i));
+			}
+
+			if (visible == 1) {
+				canvas.drawLine(xs[0], ys[0], xs[0], ys[0]);
+			} else {
+				canvas.drawPolyline(xs, ys, visible);
+			}
+		}
+	}
+
+	/**
+	 * Paints the series after it has been reduced to the first, minimum,
+	 * maximum and last sample of each pixel column. Each column becomes
+	 * four points of a single polyline (first, minimum, maximum, last),
+	 * which covers the same pixels as drawing every sample. Must be
+	 * called with the series lock held.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	private void paintDecimated(Graphics canvas) {
+		int columns = decimator.columns();
+		ensurePolylineCapacity(4 * columns);
+		for (int x = 0; x < columns; x++) {
+			int point = 4 * x;
+			xs[point] = xs[point + 1] = xs[point + 2] = xs[point + 3] = x;
+			ys[point] = pointToY(decimator.first(x));
+			ys[point + 1] = pointToY(decimator.minimum(x));
+			ys[point + 2] = pointToY(decimator.maximum(x));
+			ys[point + 3] = pointToY(decimator.last(x));
+		}
+
+		canvas.drawPolyline(xs, ys, 4 * columns);
+	}
+
+	/**
+	 * Grow the reusable polyline arrays so they hold at least the given
+	 * number of points.
+	 */
+	private void ensurePolylineCapacity(int points) {
+		if (xs.length < points) {
+			xs = new int[points];
+			ys = new int[points];
+		}
+	}
+
+	/**
+	 * Find the sample the inspector shows for a pixel column: the first
+	 * sample drawn at or to the right of it. The sample is found from the
+	 * pixel grid of the last frame, so this takes constant time for any
+	 * series size.
+	 *
+	 * @param x The pixel column under the mouse
+	 * @return The index of the sample, or -1 if there is none
+	 */
+	private int sampleAt(int x) {
+		if (frameEnd - frameStart < 2 || x <= 0) {
+			return -1;
+		}
+
+		/* Estimate the sample from the pixel grid, then correct for
+		 * rounding */
+		int i = frameStart + (int) Math.ceil(x / pixelsPerSample);
+		i = Math.max(frameStart + 1, Math.min(frameEnd, i));
+		while (i > frameStart + 1 && pointToX(i - 1) >= x) {
+			i--;
+		}
+		while (i < frameEnd && pointToX(i) < x) {
+			i++;
+		}
+		return i < frameEnd ? i : -1;
+	}
+
+	/**
+	 * Paints the inspector for the sample under the mouse over the plot:
+	 * a circle around the sample, and lines to each axis labelled with
+	 * the sample's value and index. Must be called with the series lock
+	 * held.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	private void paintInspector(Graphics canvas) {
+		int i = sampleAt(currentFocusVertical);
+		inspectedSample = i;
+		if (i < 0) {
+			return;
+		}
+
+		int x = pointToX(i);
+		int y = pointToY(series.get(i));
+
+		canvas.setFont(config.getLabelFont());
+		canvas.setColor(config.getInspectorColor());
+
+		GraphBackground.drawMarker(canvas, x, y);
+
+		canvas.drawLine(x, y, 0, y);
+		labels.drawDouble(canvas, series.get(i), 1, y - 2);
+		canvas.drawLine(x, y, x, frameY0);
+		labels.drawLong(canvas, i, x+2, frameY0 - 3);
+	}
+
+	/**
+	 * Repaint the area the inspector covers when it shows a sample of
+	 * the last frame.
+	 *
+	 * @param i The index of the sample, or -1 for none
+	 */
+	private void repaintInspector(int i) {
+		if (i < 0) {
+			return;
+		}
+
+		synchronized (series) {
+			double value = series.get(i);
+			GraphBackground.repaintInspector(this, labels, config, pointToX(i), pointToY(value),
+																			 frameY0, value, i);
+		}
+	}
+
+	/**
+	 * Move the viewport so that it starts at the given sample, keeping its
+	 * size. The viewport is kept inside the series.
+	 *
+	 * @param start The index of the first sample to show.
+	 * @param visible The number of samples to show.
+	 */
+	private void moveViewport(long start, int visible) {
+		synchronized (series) {
+			int size = series.size();
+			if (size == 0) {
+				return;
+			}
+
+			visible = Math.max(Math.min(MINIMUM_VIEW_SIZE, size), Math.min(visible, size));
+			start = Math.max(0, Math.min(start, size - visible));
+			if (start == 0 && visible == size) {
+				viewStart = 0;
+				viewEnd = -1;
+			} else {
+				viewStart = (int) start;
+				viewEnd = (int) start + visible;
+			}
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	private class GraphMouseHandler extends MouseAdapter implements MouseMotionListener {
+		/* Where the current drag started, and the viewport at that time */
+		private int dragX;
+		private int dragStart;
+		private int dragVisible;
+
+		public void mousePressed(MouseEvent e) {
+			dragX = e.getX();
+			dragStart = getViewportStart();
+			dragVisible = getViewportEnd() - dragStart;
+		}
+
+		public void mouseWheelMoved(MouseWheelEvent e) {
+			int start = getViewportStart();
+			int visible = getViewportEnd() - start;
+			if (visible < 1 || width <= 0) {
+				return;
+			}
+
+			/* Zoom around the sample under the mouse, so it stays put */
+			double fraction = Math.max(0, Math.min(1, (double) e.getX() / width));
+			double anchor = start + fraction * visible;
+			int zoomed = (int) Math.round(visible * Math.pow(ZOOM_STEP, e.getPreciseWheelRotation()));
+			if (zoomed == visible) {
+				zoomed += e.getPreciseWheelRotation() > 0 ? 1 : -1;
+			}
+			moveViewport(Math.round(anchor - fraction * zoomed), zoomed);
+		}
+
+		public void mouseExited(MouseEvent e) {
+			moveFocus(-1);
+		}
+
+		public void mouseMoved(MouseEvent e) {
+			moveFocus(e.getX());
+		}
+
+		/**
+		 * Move the inspector, repainting only the areas of the old and
+		 * new inspector if it lands on a different sample. The plot
+		 * itself is not redrawn.
+		 */
+		private void moveFocus(int x) {
+			if (config.getEnableInspector()) {
+				currentFocusVertical = x;
+				int inspected = sampleAt(x);
+				if (inspected != inspectedSample) {
+					repaintInspector(inspectedSample);
+					repaintInspector(inspected);
+				}
+			}
+		}
+
+		public void mouseDragged(MouseEvent e) {
+			if (dragVisible < 1 || width <= 0) {
+				return;
+			}
+
+			/* Dragging right moves the graph right, showing earlier samples */
+			long shift = Math.round((double) (dragX - e.getX()) * dragVisible / width);
+			moveViewport(dragStart + shift, dragVisible);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,1244 @@
+package org.haldean.simplegraph;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.nio.DoubleBuffer;
+import javax.management.JMException;
+import javax.swing.JComponent;
+
+/**
+ *  A component which draws a graph when provided with a feed of
+ *  real-time data. The graph automatically scales along the Y axis
+ *  and can be manually scaled along the X axis.
+ *
+ *  Samples are added as primitive doubles, so producers that call
+ *  {@link #addValue(double)} in a loop allocate nothing per sample.
+ *  {@link StreamingGraphComponent} and {@link LongStreamingGraphComponent}
+ *  accept other kinds of numbers on top of this class.
+ *
+ *  The graph paints every pixel of its bounds, so it is opaque and Swing
+ *  never paints whatever is behind it. Moving the inspector repaints
+ *  only the area of the old and new inspector, and while the graph is
+ *  filling up and not yet scrolling, new samples repaint only the strip
+ *  of the graph they are drawn in.
+ *
+ *  @author Will Brown (will.h.brown@gmail.com)
+ */
+public class DoubleStreamingGraphComponent extends JComponent {
+	/* The number of samples that can be added between two frames before
+	 * producers have to drain the pending queue themselves */
+	private static final int PENDING_CAPACITY = 1 << 14;
+
+	private DoubleRingBuffer series;
+	private double maximum = 1;
+	private double minimum = -1;
+
+	/* The bounds set with setMaximum and setMinimum, which still apply
+	 * when scaling to the visible window */
+	private double maximumBound = 1;
+	private double minimumBound = -1;
+
+	/* When true, the Y axis is scaled to the extremes of the visible
+	 * samples, which are tracked as samples arrive and leave the window */
+	private boolean scaleToWindow = false;
+	private SlidingExtremum windowMaximum;
+	private SlidingExtremum windowMinimum;
+
+	/* In aggregating mode, samples are folded into a bucket per pixel
+	 * column as they are drained, instead of being kept in the series.
+	 * Null unless aggregating */
+	private PixelAggregator aggregator;
+
+	private int width;
+	private int height;
+
+	/* Area left at the top and bottom to ensure the graph never quite
+	 * touches the edge, as a percentage of the value range */
+	private double margin = 0.1;
+
+	/* The number of data points visible on the graph */
+	private int sampleCount = 100;
+
+	/* The index of the last added sample */
+	private long lastSampleIndex = 0;
+
+	/* Samples added by producers that have not been moved into the
+	 * series yet. The series is only updated by whoever holds its lock,
+	 * which is normally the paint at the start of a frame */
+	private final SampleQueue pending = new SampleQueue(PENDING_CAPACITY);
+	private final SampleQueue.Sink drainSink = new SampleQueue.Sink() {
+			public void accept(double value) {
+				if (aggregator == null) {
+					series.add(value);
+				}
+				recordSample(value);
+			}
+		};
+
+	/* A copy of the visible samples and the bounds taken at the start of
+	 * each frame, so the series lock is not held while drawing */
+	private double[] frame = new double[0];
+	private int frameOffset = 0;
+	private int frameSize = 0;
+	private long frameFirstIndex = 0;
+	private long frameFirstPixel = 0;
+	private double frameMaximum = 1;
+	private double frameMinimum = -1;
+
+	/* In incremental mode, the frame is kept between frames and only the
+	 * samples added since it was copied are appended to it. The frame
+	 * starts at frameOffset in an array of twice the series capacity, so
+	 * old samples are only shifted out once every capacity samples.
+	 * frameCopyEnd is the lastSampleIndex the frame was copied up to, or
+	 * -1 if the series has been resized or cleared since */
+	private long frameCopyEnd = -1;
+
+	/* In aggregating mode, the frame holds the last value of each
+	 * bucket, and these hold the rest of each bucket */
+	private boolean frameAggregated = false;
+	private long[] bucketFirsts = new long[0];
+	private double[] bucketMinimums = new double[0];
+	private double[] bucketMaximums = new double[0];
+	private long bucketsEnd;
+
+	/* The size, sample count and configuration the current frame was
+	 * prepared with */
+	private int frameWidth = -1;
+	private int frameHeight = -1;
+	private int frameSampleCount;
+	private GraphConfiguration frameConfig;
+	private int frameConfigVersion;
+
+	/* The scale factors of the current frame */
+	private double pixelsPerUnit;
+	private double pixelsPerSample;
+	private int frameY0;
+
+	/* The points of the polyline drawn each frame, reused between
+	 * frames */
+	private int[] xs = new int[0];
+	private int[] ys = new int[0];
+
+	/* Records every sample as it is drained, or null */
+	private StreamRecorder recorder;
+
+	/* Run by the recorder on its own schedule, so that samples are
+	 * recorded soon after they arrive even if the graph is not painted */
+	private final Runnable recorderDrainer = new Runnable() {
+			public void run() {
+				synchronized (series) {
+					drainLocked();
+				}
+			}
+		};
+
+	/* The configuration object that holds the color, font and name of
+	 * the graph */
+	private GraphConfiguration config;
+
+	/* The currently-moused-over x-value */
+	private int currentFocusVertical;
+
+	/* The sample in the frame the inspector was last drawn on, or -1 */
+	private int inspectedSample = -1;
+
+	/* Formats the inspector and tick labels without allocating */
+	private final LabelFormatter labels = new LabelFormatter();
+
+	/* The cached background, axis, ticks and label */
+	private GraphBackground background = new GraphBackground();
+
+	/* The cached background and data, which the inspector is drawn over.
+	 * The version is bumped whenever a sample arrives or the scale
+	 * changes; frames with the same version as the last one, such as
+	 * those caused by moving the mouse, reuse the plot as it is */
+	private PlotLayer plotLayer = new PlotLayer();
+	private long plotVersion = 0;
+	private long frameVersion = -1;
+	private final CachedImage.Renderer plotRenderer = new CachedImage.Renderer() {
+			public void render(Graphics2D g) {
+				/* Background, border, axis, ticks and label */
+				background.paint(DoubleStreamingGraphComponent.this, g, config, width, height,
+												 frameY0, frameFirstIndex, sampleCount);
+
+				g.setColor(config.getLineColor());
+				if (frameAggregated) {
+					paintBuckets(g);
+				} else {
+					paintSegments(g, 0, frameSize - 1);
+				}
+			}
+		};
+
+	/* In incremental mode, the plot is kept in this image between frames
+	 * and scrolled rather than redrawn when new samples arrive. The
+	 * remaining fields record what the image was drawn with */
+	private BufferedImage plot;
+	private Graphics2D plotGraphics;
+	private long plotFirstIndex;
+	private long plotEndIndex;
+	private double plotMaximum;
+	private double plotMinimum;
+	private int plotSampleCount;
+	private GraphConfiguration plotConfig;
+	private int plotConfigVersion;
+
+	/* Run once per frame when samples have arrived, to repaint the part
+	 * of the graph they changed */
+	private final Runnable repainter = new Runnable() {
+			public void run() {
+				repaintChanges();
+			}
+		};
+
+	/* The clip of the graphics being painted, read without allocating */
+	private final Rectangle clipBounds = new Rectangle();
+
+	/* Performance counters, or null unless enabled with enableMetrics */
+	private volatile GraphMetrics metrics;
+
+	/**
+	 * Create a new {@link DoubleStreamingGraphComponent} with the default
+	 * {@link GraphConfiguration}.
+	 */
+	public DoubleStreamingGraphComponent() {
+		this(new GraphConfiguration());
+	}
+
+	/**
+	 * Create a new {@link DoubleStreamingGraphComponent} with the specified
+	 * {@link GraphConfiguration}.
+	 *
+	 * @param gc The {@link GraphConfiguration} to use.
+	 */
+	public DoubleStreamingGraphComponent(GraphConfiguration gc) {
+		series = new DoubleRingBuffer(sampleCount);
+		windowMaximum = new SlidingExtremum(true, sampleCount);
+		windowMinimum = new SlidingExtremum(false, sampleCount);
+		config = gc;
+		setOpaque(true);
+		setDoubleBuffered(true);
+		addComponentListener(new ComponentAdapter() {
+				public void componentResized(ComponentEvent e) {
+					Dimension size = getSize();
+					width = (int) size.getWidth();
+					height = (int) size.getHeight();
+
+					currentFocusVertical = width - 1;
+				}
+			});
+		GraphMouseHandler mouseHandler = new GraphMouseHandler();
+		addMouseListener(mouseHandler);
+		addMouseMotionListener(mouseHandler);
+	}
+
+	/**
+	 * Manually set the maximum. Note that if a data point larger than this
+	 * maximum is added, the graph will automatically scale. This sets a lower
+	 * bound on the actual maximum of the graph.
+	 *
+	 * @param max The lower bound for the maximum
+	 */
+	public void setMaximum(double max) {
+		synchronized (series) {
+			maximum = max;
+			maximumBound = max;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Manually set the minimum. Note that if a data point smaller than this
+	 * minimum is added, the graph will automatically scale. This sets an upper
+	 * bound on the actual minimum of the graph.
+	 *
+	 * @param min The upper bound for the minimum
+	 */
+	public void setMinimum(double min) {
+		synchronized (series) {
+			minimum = min;
+			minimumBound = min;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Set the {@link GraphConfiguration} of the graph.
+	 *
+	 * @param gc The configuration to assign.
+	 */
+	public void setGraphConfiguration(GraphConfiguration gc) {
+		config = gc;
+	}
+
+	/**
+	 * Get the {@link GraphConfiguration} of this component.
+	 */
+	public GraphConfiguration getGraphConfiguration() {
+		return config;
+	}
+
+	/**
+	 * Set the scale along the X axis.
+	 *
+	 * @param newSampleCount The number of samples shown along the
+	 * axis. The graph will automatically adjust to show the most recent
+	 * sampleCount samples.
+	 */
+	public void setSampleCount(int newSampleCount) {
+		synchronized (series) {
+			drainLocked();
+			sampleCount = newSampleCount;
+
+			long oldestVisible = lastSampleIndex - sampleCount;
+			if (aggregator != null) {
+				aggregator.evictBefore(oldestVisible);
+			} else {
+				series.resize(sampleCount);
+				frameCopyEnd = -1;
+				windowMaximum.evictBefore(oldestVisible);
+				windowMinimum.evictBefore(oldestVisible);
+				windowMaximum.resize(sampleCount);
+				windowMinimum.resize(sampleCount);
+			}
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Choose how the Y axis is scaled. By default, the graph grows to fit
+	 * every value ever added, so a single spike flattens the rest of the
+	 * graph for good. When scaling to the window, the graph instead fits
+	 * the smallest and largest values currently visible, together with
+	 * any bounds set with {@link #setMaximum(double)} and
+	 * {@link #setMinimum(double)}.
+	 *
+	 * @param scale Pass true to scale to the visible values.
+	 */
+	public void setScaleToWindow(boolean scale) {
+		synchronized (series) {
+			scaleToWindow = scale;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Record every sample the graph receives from now on, so that it can
+	 * be replayed later with a {@link StreamReplayer}. Samples are
+	 * written as they are moved out of the pending queue, so recording
+	 * does not slow down {@link #addValue(double)}. While recording, the
+	 * recorder also moves them every {@link StreamRecorder#DRAIN_MILLIS}
+	 * milliseconds, whether or not the graph is painted. Pass null to
+	 * stop recording; the recorder is not closed.
+	 *
+	 * @param newRecorder The recorder to write to, or null.
+	 */
+	public void setRecorder(StreamRecorder newRecorder) {
+		synchronized (series) {
+			drainLocked();
+			if (recorder != null) {
+				recorder.attach(null);
+			}
+			recorder = newRecorder;
+			if (recorder != null) {
+				recorder.attach(recorderDrainer);
+			}
+		}
+	}
+
+	/**
+	 * Choose whether samples are aggregated as they arrive. When
+	 * producers add far more samples than the graph has pixel columns,
+	 * storing and drawing every sample is wasted work. In aggregating
+	 * mode, samples are instead folded into a bucket per pixel column
+	 * that keeps only the smallest, largest and last value, so memory and
+	 * drawing time depend on the width of the graph rather than on the
+	 * sample count, and spikes are still drawn.
+	 *
+	 * Samples already on the graph are kept when aggregation is turned
+	 * on, but are lost when it is turned off. Aggregated graphs are
+	 * always redrawn in full, even with incremental rendering enabled.
+	 *
+	 * @param aggregate Pass true to aggregate samples per pixel.
+	 */
+	public void setAggregating(boolean aggregate) {
+		synchronized (series) {
+			drainLocked();
+			if (aggregate == (aggregator != null)) {
+				return;
+			}
+
+			if (aggregate) {
+				aggregator = new PixelAggregator(2 * Math.max(1, width));
+				aggregator.setBucketSize(samplesPerBucket());
+				long index = lastSampleIndex - series.size();
+				for (int i = 0; i < series.size(); i++) {
+					aggregator.add(index + i, series.get(i));
+				}
+
+				/* Free the samples, which the buckets now stand for */
+				series.clear();
+				series.resize(1);
+				windowMaximum.evictBefore(Long.MAX_VALUE);
+				windowMinimum.evictBefore(Long.MAX_VALUE);
+				windowMaximum.resize(1);
+				windowMinimum.resize(1);
+			} else {
+				aggregator = null;
+				series.resize(sampleCount);
+				frameCopyEnd = -1;
+				windowMaximum.resize(sampleCount);
+				windowMinimum.resize(sampleCount);
+			}
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Returns true if samples are aggregated per pixel as they arrive.
+	 */
+	public boolean isAggregating() {
+		synchronized (series) {
+			return aggregator != null;
+		}
+	}
+
+	/**
+	 * Get the number of samples folded into each bucket in aggregating
+	 * mode: the number of samples per pixel column at the current width.
+	 */
+	private int samplesPerBucket() {
+		return Math.max(1, sampleCount / Math.max(1, width));
+	}
+
+	/**
+	 * Add a value to the data series. This never waits for the graph to
+	 * be painted, and may be called from any number of threads at once.
+	 *
+	 * @param value The value to add
+	 */
+	public void addValue(double value) {
+		/* If the pending queue is full, move its samples into the series
+		 * ourselves and try again. This only ever waits for another drain,
+		 * never for the graph to be drawn. */
+		while (!pending.offer(value)) {
+			drainPending();
+		}
+
+		samplesAdded(1);
+	}
+
+	/**
+	 * Add a batch of values to the data series. The batch is claimed in
+	 * the pending queue with a single atomic operation and at most one
+	 * repaint is scheduled, which is much cheaper than adding the values
+	 * one at a time.
+	 *
+	 * @param values The array holding the values to add.
+	 * @param off The index of the first value to add.
+	 * @param len The number of values to add.
+	 */
+	public void addValues(double[] values, int off, int len) {
+		if (off < 0 || len < 0 || off + len > values.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return;
+		}
+
+		long index = pending.claim(len);
+		if (index >= 0) {
+			for (int i = 0; i < len; i++) {
+				pending.publish(index + i, values[off + i]);
+			}
+		} else {
+			/* The batch does not fit in the queue, so copy it straight into
+			 * the series behind whatever is already pending */
+			long start = lockRequested();
+			synchronized (series) {
+				lockAcquired(start);
+				drainLocked();
+				for (int i = off; i < off + len; i++) {
+					recordSample(values[i]);
+				}
+				if (recorder != null) {
+					recorder.endBlock();
+				}
+				if (aggregator == null) {
+					series.add(values, off, len);
+				}
+			}
+		}
+
+		samplesAdded(len);
+	}
+
+	/**
+	 * Add a batch of whole numbers to the data series, converting each
+	 * to a double as it is published, for
+	 * {@link LongStreamingGraphComponent}. The batch is claimed and
+	 * repainted as in {@link #addValues(double[], int, int)}.
+	 *
+	 * @param values The array holding the values to add.
+	 * @param off The index of the first value to add.
+	 * @param len The number of values to add.
+	 */
+	void addLongs(long[] values, int off, int len) {
+		if (off < 0 || len < 0 || off + len > values.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return;
+		}
+
+		long index = pending.claim(len);
+		if (index >= 0) {
+			for (int i = 0; i < len; i++) {
+				pending.publish(index + i, values[off + i]);
+			}
+		} else {
+			long start = lockRequested();
+			synchronized (series) {
+				lockAcquired(start);
+				drainLocked();
+				for (int i = off; i < off + len; i++) {
+					recordSample(values[i]);
+					if (aggregator == null) {
+						series.add(values[i]);
+					}
+				}
+				if (recorder != null) {
+					recorder.endBlock();
+				}
+			}
+		}
+
+		samplesAdded(len);
+	}
+
+	/**
+	 * Add every remaining value in a buffer to the data series. The
+	 * buffer's position is advanced to its limit. As with
+	 * {@link #addValues(double[], int, int)}, the whole batch is claimed
+	 * at once and schedules at most one repaint.
+	 *
+	 * @param values The buffer holding the values to add.
+	 */
+	public void addValues(DoubleBuffer values) {
+		int len = values.remaining();
+		if (len == 0) {
+			return;
+		}
+
+		long index = pending.claim(len);
+		if (index >= 0) {
+			for (int i = 0; i < len; i++) {
+				pending.publish(index + i, values.get());
+			}
+		} else {
+			long start = lockRequested();
+			synchronized (series) {
+				lockAcquired(start);
+				drainLocked();
+				for (int i = values.position(); i < values.limit(); i++) {
+					recordSample(values.get(i));
+				}
+				if (recorder != null) {
+					recorder.endBlock();
+				}
+				if (aggregator == null) {
+					series.add(values);
+				} else {
+					values.position(values.limit());
+				}
+			}
+		}
+
+		samplesAdded(len);
+	}
+
+	/**
+	 * Move every sample waiting in the pending queue into the series.
+	 * Must be called with the series lock held.
+	 */
+	private void drainLocked() {
+		pending.drain(drainSink);
+		if (recorder != null) {
+			recorder.endBlock();
+		}
+	}
+
+	/**
+	 * Move every sample waiting in the pending queue into the series.
+	 */
+	private void drainPending() {
+		long start = lockRequested();
+		synchronized (series) {
+			lockAcquired(start);
+			drainLocked();
+		}
+	}
+
+	/**
+	 * Start timing a producer's wait for the series lock, if metrics are
+	 * enabled.
+	 *
+	 * @return The time the wait started, to pass to lockAcquired.
+	 */
+	private long lockRequested() {
+		return metrics == null ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Record how long a producer waited for the series lock. Called just
+	 * after the lock is taken.
+	 *
+	 * @param start The time returned by lockRequested.
+	 */
+	private void lockAcquired(long start) {
+		GraphMetrics m = metrics;
+		if (m != null && start != 0) {
+			m.producerBlocked(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Count a new sample and widen the bounds of the graph so that they
+	 * include it. Must be called with the series lock held.
+	 */
+	private void recordSample(double value) {
+		if (recorder != null) {
+			recorder.record(value);
+		}
+
+		if (value > maximum)
+			maximum = value;
+		if (value < minimum)
+			minimum = value;
+
+		/* Slide the window forward to include the new sample */
+		long oldestVisible = lastSampleIndex - sampleCount + 1;
+		if (aggregator != null) {
+			aggregator.evictBefore(oldestVisible);
+			aggregator.add(lastSampleIndex, value);
+		} else {
+			windowMaximum.evictBefore(oldestVisible);
+			windowMinimum.evictBefore(oldestVisible);
+			windowMaximum.add(lastSampleIndex, value);
+			windowMinimum.add(lastSampleIndex, value);
+		}
+
+		lastSampleIndex++;
+		plotVersion++;
+	}
+
+	/**
+	 * Count newly added samples and schedule a repaint for the next
+	 * frame. This is safe to call from any thread, and many calls within
+	 * one frame result in a single repaint.
+	 *
+	 * @param count The number of samples added.
+	 */
+	private void samplesAdded(int count) {
+		boolean scheduled = RenderScheduler.repaint(repainter, config.getTargetFrameRate());
+
+		GraphMetrics m = metrics;
+		if (m != null) {
+			m.samplesIngested(count);
+			if (!scheduled) {
+				m.repaintCoalesced();
+			}
+		}
+	}
+
+	/**
+	 * Start collecting performance metrics for this graph, and publish
+	 * them as a JMX MBean. Calling this again returns the same metrics.
+	 *
+	 * @param name The name of the graph in the MBean's object name.
+	 * @return The metrics of this graph.
+	 * @throws JMException If the MBean cannot be registered.
+	 */
+	public synchronized GraphMetrics enableMetrics(String name) throws JMException {
+		if (metrics == null) {
+			metrics = new GraphMetrics(name);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Stop collecting performance metrics, and unregister the MBean.
+	 *
+	 * @throws JMException If the MBean cannot be unregistered.
+	 */
+	public synchronized void disableMetrics() throws JMException {
+		if (metrics != null) {
+			metrics.unregister();
+			metrics = null;
+		}
+	}
+
+	/**
+	 * Convert a value to a canvas pixel location, using the scale
+	 * computed at the start of the current frame.
+	 *
+	 * @param p The sample value
+	 * @return The number of pixels between the top of the graph and the
+	 * horizontal line representing the given sample value
+	 */
+	private int pointToY(double p) {
+		return (int) ((frameMaximum - (1 - margin) * p) * pixelsPerUnit);
+	}
+
+	/**
+	 * Convert a time-index to a canvas pixel location. Pixels are
+	 * assigned to sample indices counted from the first sample ever
+	 * added, so that a sample stays on the same pixel grid as the graph
+	 * scrolls.
+	 *
+	 * @param x The time index, relative to the first sample in the frame
+	 * @return The pixel X corresponding to that time index
+	 */
+	private int pointToX(int x) {
+		return GraphBackground.indexToX(frameFirstIndex + x, frameFirstPixel, pixelsPerSample);
+	}
+
+	/**
+	 * Paints the graph onto the provided graphics object. Only a paint
+	 * of the whole graph moves on to newly added samples; a paint of part
+	 * of it, such as the area behind the inspector, draws the same frame
+	 * as the rest of the screen shows.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	public void paint(Graphics canvas) {
+		GraphMetrics m = metrics;
+		long paintStart = m == null ? 0 : System.nanoTime();
+
+		/* Resize events are not delivered to offscreen graphs */
+		if (getWidth() != frameWidth || getHeight() != frameHeight ||
+				GraphBackground.clipCovers(canvas, clipBounds, frameWidth, frameHeight)) {
+			prepareFrame();
+		}
+
+		if (config.getEnableIncrementalRendering() && !frameAggregated) {
+			paintIncremental(canvas, frameY0);
+		} else {
+			plotLayer.paint(this, canvas, config, width, height, frameVersion, plotRenderer);
+		}
+
+		if (config.getEnableInspector()) {
+			paintInspector(canvas);
+		}
+
+		if (m != null) {
+			m.painted(System.nanoTime() - paintStart);
+		}
+	}
+
+	/**
+	 * Move the frame on to the samples added since it was last prepared,
+	 * and work out its bounds and scale.
+	 */
+	private void prepareFrame() {
+		width = frameWidth = getWidth();
+		height = frameHeight = getHeight();
+		frameSampleCount = sampleCount;
+		frameConfig = config;
+		frameConfigVersion = config.getVersion();
+
+		/* Drain the pending samples and copy the visible ones out of the
+		 * series, so that the lock is released before any drawing
+		 * happens and producers are never held up by Java2D */
+		GraphMetrics m = metrics;
+		synchronized (series) {
+			drainLocked();
+
+			/* Nothing needs copying if the data and scale are unchanged */
+			if (aggregator != null && plotVersion != frameVersion) {
+				frameVersion = plotVersion;
+				copyBuckets();
+			} else if (plotVersion != frameVersion) {
+				frameVersion = plotVersion;
+				copySamples();
+
+				frameFirstIndex = Math.max(0, lastSampleIndex - sampleCount);
+				if (scaleToWindow && !windowMaximum.isEmpty()) {
+					frameMaximum = Math.max(maximumBound, windowMaximum.get());
+					frameMinimum = Math.min(minimumBound, windowMinimum.get());
+				} else {
+					frameMaximum = maximum;
+					frameMinimum = minimum;
+				}
+			}
+
+			if (m != null) {
+				long buckets = aggregator == null ? 0 : aggregator.memoryFootprint();
+				m.seriesSize(frameAggregated ? frameSize : series.size(),
+										 8L * (series.capacity() + frame.length) + 24L * bucketFirsts.length +
+										 buckets + pending.memoryFootprint());
+			}
+		}
+
+		/* Hoist the scale factors out of the drawing loops */
+		pixelsPerUnit = height / (frameMaximum - frameMinimum);
+		pixelsPerSample = (double) width / sampleCount;
+		frameFirstPixel = GraphBackground.indexToPixel(frameFirstIndex, pixelsPerSample);
+
+		/* The Y component of the X axis can shift based on scaling, so
+		 * we calculate it once to save computation */
+		frameY0 = pointToY(0);
+	}
+
+	/**
+	 * Prepare a frame with the samples that have arrived and repaint the
+	 * part of the graph they changed. While the graph is filling up, new
+	 * samples are drawn to the right of the old ones without moving them,
+	 * so only the strip they fall in, and the inspector if it moved onto
+	 * a new sample, are repainted. Anything else, such as a scroll or a
+	 * change of scale, repaints the whole graph. Runs on the event
+	 * dispatch thread once per frame.
+	 */
+	private void repaintChanges() {
+		/* A graph that is not on screen is painted by whoever draws it,
+		 * which may not be the event dispatch thread */
+		if (!isShowing()) {
+			return;
+		}
+		if (frameWidth != getWidth() || frameHeight != getHeight() || frameAggregated ||
+				frameConfig != config || frameConfigVersion != config.getVersion()) {
+			repaint();
+			return;
+		}
+
+		long oldFirstIndex = frameFirstIndex;
+		int oldSize = frameSize;
+		int oldSampleCount = frameSampleCount;
+		double oldMaximum = frameMaximum;
+		double oldMinimum = frameMinimum;
+		int oldInspected = inspectedSample;
+		prepareFrame();
+
+		if (frameAggregated || frameFirstIndex != oldFirstIndex || frameSize < oldSize ||
+				frameSampleCount != oldSampleCount || frameMaximum != oldMaximum ||
+				frameMinimum != oldMinimum) {
+			repaint();
+			return;
+		}
+		if (frameSize == oldSize) {
+			return;
+		}
+
+		/* The segment joining the last sample drawn to the first new one
+		 * starts at the last sample drawn */
+		int left = oldSize > 0 ? pointToX(oldSize - 1) - 1 : 0;
+		int right = pointToX(frameSize - 1) + 2;
+		repaint(left, 0, right - left, height);
+
+		if (config.getEnableInspector()) {
+			int inspected = sampleAt(currentFocusVertical);
+			if (inspected != oldInspected) {
+				repaintInspector(oldInspected);
+				repaintInspector(inspected);
+			}
+		}
+	}
+
+	/**
+	 * Copy the samples of the series into the frame. In incremental
+	 * mode, only the samples added since the last copy are appended, and
+	 * the samples that fell out of the series are dropped from the front
+	 * of the frame; the last sample already copied stays to join the
+	 * line to the new ones. Must be called with the series lock held.
+	 */
+	private void copySamples() {
+		int size = series.size();
+		long added = lastSampleIndex - frameCopyEnd;
+		int dropped = (int) (frameSize + added - size);
+		boolean append = config.getEnableIncrementalRendering() && !frameAggregated &&
+			frameCopyEnd >= 0 && added < size && dropped >= 0;
+		frameAggregated = false;
+		frameCopyEnd = lastSampleIndex;
+
+		if (!append) {
+			if (frame.length < size) {
+				frame = new double[series.capacity()];
+			}
+			series.copyTo(frame);
+			frameOffset = 0;
+			frameSize = size;
+			return;
+		}
+
+		frameOffset += dropped;
+		frameSize -= dropped;
+		if (frameOffset + size > frame.length) {
+			double[] target = frame;
+			if (frame.length < 2 * series.capacity()) {
+				target = new double[2 * series.capacity()];
+			}
+			System.arraycopy(frame, frameOffset, target, 0, frameSize);
+			frame = target;
+			frameOffset = 0;
+		}
+		series.copyTo(frameSize, frame, frameOffset + frameSize, (int) added);
+		frameSize = size;
+	}
+
+	/**
+	 * Copy the buckets of an aggregating graph into the frame, and find
+	 * the bounds of the frame. Must be called with the series lock held.
+	 */
+	private void copyBuckets() {
+		aggregator.setBucketSize(samplesPerBucket());
+		aggregator.evictBefore(lastSampleIndex - sampleCount);
+
+		frameAggregated = true;
+		frameOffset = 0;
+		frameSize = aggregator.size();
+		if (bucketFirsts.length < frameSize) {
+			int capacity = Math.max(frameSize, 2 * bucketFirsts.length);
+			bucketFirsts = new long[capacity];
+			bucketMinimums = new double[capacity];
+			bucketMaximums = new double[capacity];
+		}
+		if (frame.length < frameSize) {
+			frame = new double[bucketFirsts.length];
+		}
+		aggregator.copyTo(bucketFirsts, bucketMinimums, bucketMaximums, frame);
+		bucketsEnd = lastSampleIndex;
+
+		frameFirstIndex = Math.max(0, lastSampleIndex - sampleCount);
+		if (scaleToWindow && frameSize > 0) {
+			double high = bucketMaximums[0];
+			double low = bucketMinimums[0];
+			for (int i = 1; i < frameSize; i++) {
+				high = Math.max(high, bucketMaximums[i]);
+				low = Math.min(low, bucketMinimums[i]);
+			}
+			frameMaximum = Math.max(maximumBound, high);
+			frameMinimum = Math.min(minimumBound, low);
+		} else {
+			frameMaximum = maximum;
+			frameMinimum = minimum;
+		}
+	}
+
+	/**
+	 * Paints the graph through the persistent plot image. When new
+	 * samples have arrived since the last frame, the image is scrolled
+	 * left with copyArea and only the newly exposed strip and the graph
+	 * label are redrawn. The whole image is redrawn instead when the
+	 * size, scale, sample count or configuration has changed.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 * @param y0 The pixel Y of the horizontal axis
+	 */
+	private void paintIncremental(Graphics canvas, int y0) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		long frameEndIndex = frameFirstIndex + frameSize;
+		boolean full = plot == null ||
+			plot.getWidth() != width || plot.getHeight() != height ||
+			frameMaximum != plotMaximum || frameMinimum != plotMinimum ||
+			sampleCount != plotSampleCount || config != plotConfig ||
+			config.getVersion() != plotConfigVersion ||
+			frameFirstIndex < plotFirstIndex || frameEndIndex < plotEndIndex;
+
+		/* The pixel, in this frame, of the last sample already drawn */
+		int drawnX = 0;
+		if (!full && plotEndIndex > plotFirstIndex) {
+			drawnX = GraphBackground.indexToX(plotEndIndex - 1, frameFirstPixel, pixelsPerSample);
+			full = drawnX < 0;
+		}
+
+		if (plot == null || plot.getWidth() != width || plot.getHeight() != height) {
+			if (plotGraphics != null) {
+				plotGraphics.dispose();
+			}
+			plot = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			plotGraphics = plot.createGraphics();
+		}
+
+		/* The graphics object is kept with the image, rather than created
+		 * for every frame */
+		Graphics2D g = plotGraphics;
+		if (full) {
+			GraphBackground.render(g, labels, config, width, height, y0, frameFirstIndex, sampleCount);
+			g.setColor(config.getLineColor());
+			paintSegments(g, 0, frameSize - 1);
+		} else if (frameEndIndex > plotEndIndex) {
+			int shift = GraphBackground.clampPixel(frameFirstPixel -
+				GraphBackground.indexToPixel(plotFirstIndex, pixelsPerSample));
+			if (shift > 0) {
+				g.copyArea(shift, 0, width - shift, height, -shift, 0);
+			}
+			paintStrip(g, y0, drawnX, width);
+
+			/* The graph label does not scroll with the data, and neither
+			 * the oldest segment nor the labels of ticks that scrolled off
+			 * the left edge should stay behind */
+			if (frameFirstIndex != plotFirstIndex) {
+				g.setFont(config.getLabelFont());
+				int labelWidth = g.getFontMetrics().stringWidth(config.getLabelValue());
+				paintStrip(g, y0, 0, labelWidth + 2);
+			}
+		}
+
+		plotFirstIndex = frameFirstIndex;
+		plotEndIndex = frameEndIndex;
+		plotMaximum = frameMaximum;
+		plotMinimum = frameMinimum;
+		plotSampleCount = sampleCount;
+		plotConfig = config;
+		plotConfigVersion = config.getVersion();
+
+		canvas.drawImage(plot, 0, 0, null);
+	}
+
+	/**
+	 * Redraws a vertical strip of the plot image: the background layer,
+	 * then every segment that crosses the strip.
+	 *
+	 * @param g The graphics object of the plot image
+	 * @param y0 The pixel Y of the horizontal axis
+	 * @param left The first pixel column of the strip
+	 * @param right The pixel column just after the strip
+	 */
+	private void paintStrip(Graphics g, int y0, int left, int right) {
+		if (frameSize == 0 || right <= left) {
+			return;
+		}
+
+		g.setClip(left, 0, right - left, height);
+		GraphBackground.render(g, labels, config, width, height, y0, frameFirstIndex, sampleCount);
+		g.setColor(config.getLineColor());
+
+		/* Widen the sample range by a pixel on each side, so that segments
+		 * which only clip the edges of the strip are redrawn as well */
+		int first = (int) ((long) (left - 1) * sampleCount / width) - 2;
+		int last = (int) ((long) (right + 1) * sampleCount / width) + 2;
+		paintSegments(g, Math.max(0, first), Math.min(frameSize - 1, last));
+		g.setClip(null);
+	}
+
+	/**
+	 * Paints the line segments joining a run of samples in the frame as
+	 * a single polyline.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 * @param first The index in the frame of the first sample
+	 * @param last The index in the frame of the last sample
+	 */
+	private void paintSegments(Graphics canvas, int first, int last) {
+		int count = last - first + 1;
+		if (count <= 0) {
+			return;
+		}
+
+		if (xs.length < count) {
+			xs = new int[frame.length];
+			ys = new int[frame.length];
+		}
+		for (int i = 0; i < count; i++) {
+			xs[i] = pointToX(first + i);
+			ys[i] = pointToY(frame[frameOffset + first + i]);
+		}
+
+		if (count == 1) {
+			canvas.drawLine(xs[0], ys[0], xs[0], ys[0]);
+		} else {
+			canvas.drawPolyline(xs, ys, count);
+		}
+	}
+
+	/**
+	 * Paints the buckets of an aggregating graph as a single polyline,
+	 * which runs down each bucket's column from its smallest to its
+	 * largest value and then to its last value.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	private void paintBuckets(Graphics canvas) {
+		if (frameSize == 0) {
+			return;
+		}
+
+		if (xs.length < 3 * frameSize) {
+			xs = new int[3 * bucketFirsts.length];
+			ys = new int[xs.length];
+		}
+
+		int count = 0;
+		for (int i = 0; i < frameSize; i++) {
+			int x = bucketToX(i);
+			xs[count] = x;
+			ys[count++] = pointToY(bucketMinimums[i]);
+			xs[count] = x;
+			ys[count++] = pointToY(bucketMaximums[i]);
+			xs[count] = x;
+			ys[count++] = pointToY(frame[i]);
+		}
+		canvas.drawPolyline(xs, ys, count);
+	}
+
+	/**
+	 * Get the pixel X of the first sample in a bucket of the frame.
+	 */
+	private int bucketToX(int i) {
+		return GraphBackground.indexToX(bucketFirsts[i], frameFirstPixel, pixelsPerSample);
+	}
+
+	/**
+	 * Get the index of the last sample in a bucket of the frame.
+	 */
+	private long bucketLastIndex(int i) {
+		return (i + 1 < frameSize ? bucketFirsts[i + 1] : bucketsEnd) - 1;
+	}
+
+	/**
+	 * Find the sample the inspector shows for a pixel column: the first
+	 * sample drawn at or to the right of it. The sample is found from the
+	 * pixel grid of the current frame, so this takes constant time for
+	 * any sample count.
+	 *
+	 * @param x The pixel column under the mouse
+	 * @return The index of the sample in the frame, or -1 if there is none
+	 */
+	private int sampleAt(int x) {
+		if (frameAggregated) {
+			return bucketAt(x);
+		}
+		if (frameSize < 2 || x <= 0) {
+			return -1;
+		}
+
+		/* Estimate the sample from the pixel grid, then correct for
+		 * rounding */
+		int i = (int) Math.ceil((double) (x + frameFirstPixel) *
+														sampleCount / width - frameFirstIndex);
+		i = Math.max(1, Math.min(frameSize, i));
+		while (i > 1 && pointToX(i - 1) >= x) {
+			i--;
+		}
+		while (i < frameSize && pointToX(i) < x) {
+			i++;
+		}
+		return i < frameSize ? i : -1;
+	}
+
+	/**
+	 * Find the bucket the inspector shows for a pixel column: the last
+	 * bucket that starts at or to the left of it, found by binary search.
+	 *
+	 * @param x The pixel column under the mouse
+	 * @return The index of the bucket in the frame, or -1 if there is none
+	 */
+	private int bucketAt(int x) {
+		int low = 0;
+		int high = frameSize;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (bucketToX(middle) <= x) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low - 1;
+	}
+
+	/**
+	 * Paints the inspector for the sample under the mouse over the plot:
+	 * a circle around the sample, and lines to each axis labelled with
+	 * the sample's value and index.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	private void paintInspector(Graphics canvas) {
+		int i = sampleAt(currentFocusVertical);
+		inspectedSample = i;
+		if (i < 0) {
+			return;
+		}
+
+		/* An aggregated bucket is shown by its last sample */
+		long index = frameAggregated ? bucketLastIndex(i) : frameFirstIndex + i;
+		int x = GraphBackground.indexToX(index, frameFirstPixel, pixelsPerSample);
+		double value = frame[frameOffset + i];
+		int y = pointToY(value);
+
+		canvas.setFont(config.getLabelFont());
+		canvas.setColor(config.getInspectorColor());
+
+		GraphBackground.drawMarker(canvas, x, y);
+
+		canvas.drawLine(x, y, 0, y);
+		labels.drawDouble(canvas, value, 1, y - 2);
+		canvas.drawLine(x, y, x, frameY0);
+		labels.drawLong(canvas, index, x + 2, frameY0 - 3);
+	}
+
+	/**
+	 * Repaint the area the inspector covers when it shows a sample of
+	 * the current frame.
+	 *
+	 * @param i The index of the sample in the frame, or -1 for none
+	 */
+	private void repaintInspector(int i) {
+		if (i < 0) {
+			return;
+		}
+
+		long index = frameAggregated ? bucketLastIndex(i) : frameFirstIndex + i;
+		int x = GraphBackground.indexToX(index, frameFirstPixel, pixelsPerSample);
+		double value = frame[frameOffset + i];
+		GraphBackground.repaintInspector(this, labels, config, x, pointToY(value), frameY0,
+																		 value, index);
+	}
+
+	private class GraphMouseHandler extends MouseAdapter implements MouseMotionListener {
+		public void mouseExited(MouseEvent e) {
+			moveFocus((int) (0.75 * width) - 1);
+		}
+
+		public void mouseMoved(MouseEvent e) {
+			moveFocus(e.getX());
+		}
+
+		/**
+		 * Move the inspector, repainting only the areas of the old and
+		 * new inspector if it lands on a different sample. The plot
+		 * itself is not redrawn.
+		 */
+		private void moveFocus(int x) {
+			if (config.getEnableInspector()) {
+				currentFocusVertical = x;
+				int inspected = sampleAt(x);
+				if (inspected != inspectedSample) {
+					repaintInspector(inspectedSample);
+					repaintInspector(inspected);
+				}
+			}
+		}
+
+		public void mouseDragged(MouseEvent e) {
+			;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,300 @@
+package org.haldean.simplegraph;
+
+import java.awt.Component;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+
+/**
+ * The parts of a graph that do not depend on the data: the background,
+ * border, horizontal axis, tick marks, tick labels and graph label.
+ * These are drawn once into an offscreen image and copied onto the
+ * screen every frame, and only redrawn when the size, the configuration,
+ * the position of the axis or the position of the ticks changes.
+ *
+ * The image is kept in a {@link CachedImage}, in video memory when
+ * there is a screen.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class GraphBackground {
+	private final CachedImage image = new CachedImage();
+
+	/* The parameters the cached image was drawn with */
+	private boolean valid = false;
+	private int width;
+	private int height;
+	private int y0;
+	private long firstIndex;
+	private double span;
+	private GraphConfiguration config;
+	private int configVersion;
+
+	/* Formats the tick labels without allocating */
+	private final LabelFormatter labels = new LabelFormatter();
+
+	/* Redraws the cached image with the parameters above */
+	private final CachedImage.Renderer renderer = new CachedImage.Renderer() {
+			public void render(Graphics2D g) {
+				GraphBackground.render(g, labels, config, width, height, y0, firstIndex, span);
+			}
+		};
+
+	/**
+	 * Paint the background layer onto a canvas, redrawing the cached
+	 * image first if it is out of date.
+	 *
+	 * @param component The component being painted
+	 * @param canvas The graphics object to paint onto
+	 * @param gc The configuration of the graph
+	 * @param width The width of the graph in pixels
+	 * @param height The height of the graph in pixels
+	 * @param y0 The pixel Y of the horizontal axis
+	 * @param firstIndex The index of the sample at the left edge of the
+	 * graph
+	 * @param span The number of samples across the width of the graph
+	 */
+	void paint(Component component, Graphics canvas, GraphConfiguration gc,
+						 int width, int height, int y0, long firstIndex, double span) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		/* Without ticks, scrolling does not change the background */
+		if (gc.getTickDistance() == 0) {
+			firstIndex = 0;
+		}
+
+		boolean stale = !valid || width != this.width || height != this.height ||
+			y0 != this.y0 || firstIndex != this.firstIndex || span != this.span ||
+			gc != config || gc.getVersion() != configVersion;
+
+		valid = true;
+		this.width = width;
+		this.height = height;
+		this.y0 = y0;
+		this.firstIndex = firstIndex;
+		this.span = span;
+		config = gc;
+		configVersion = gc.getVersion();
+
+		image.paint(component, canvas, width, height, stale, renderer);
+	}
+
+	/**
+	 * Draw the background layer directly onto a canvas, without caching.
+	 * Tick marks are placed on every sample index that is a multiple of
+	 * the configured tick distance.
+	 *
+	 * @param canvas The graphics object to draw onto
+	 * @param labels Formats the tick labels
+	 * @param config The configuration of the graph
+	 * @param width The width of the graph in pixels
+	 * @param height The height of the graph in pixels
+	 * @param y0 The pixel Y of the horizontal axis
+	 * @param firstIndex The index of the sample at the left edge of the
+	 * graph
+	 * @param span The number of samples across the width of the graph
+	 */
+	static void render(Graphics canvas, LabelFormatter labels, GraphConfiguration config,
+										 int width, int height, int y0, long firstIndex, double span) {
+		renderAxis(canvas, config, width, height, y0);
+
+		int tickDistance = config.getTickDistance();
+		if (tickDistance > 0 && span > 0) {
+			double pixelsPerSample = width / span;
+			long firstPixel = indexToPixel(firstIndex, pixelsPerSample);
+			long tickLocation = ((firstIndex + tickDistance - 1) / tickDistance) * tickDistance;
+			int tickPixel = indexToX(tickLocation, firstPixel, pixelsPerSample);
+
+			/* No more ticks than fit in the span, whatever the pixels
+			 * round to */
+			long ticks = (long) (span / tickDistance) + 1;
+			while (tickPixel < width && ticks-- > 0) {
+				canvas.drawLine(tickPixel, y0, tickPixel, y0 + 2);
+				if (config.isTickLabelLocation(tickLocation))
+					labels.drawLong(canvas, tickLocation,
+													tickPixel, y0 + 3 + config.getLabelFont().getSize());
+				tickLocation += tickDistance;
+				tickPixel = indexToX(tickLocation, firstPixel, pixelsPerSample);
+			}
+		}
+
+		/* Graph label */
+		canvas.drawString(config.getLabelValue(), 1, y0 - 2);
+	}
+
+	/**
+	 * Draw the background layer of a graph whose horizontal axis is time.
+	 * Ticks are placed on round multiples of a time step, chosen as the
+	 * smallest of 1, 2 or 5 times a power of ten nanoseconds that keeps
+	 * ticks at least the configured tick distance apart in pixels, and
+	 * are labelled in seconds since the origin.
+	 *
+	 * @param canvas The graphics object to draw onto
+	 * @param labels Formats the tick labels
+	 * @param config The configuration of the graph
+	 * @param width The width of the graph in pixels
+	 * @param height The height of the graph in pixels
+	 * @param y0 The pixel Y of the horizontal axis
+	 * @param start The time at the left edge of the graph, in
+	 * nanoseconds since the origin
+	 * @param span The time across the width of the graph, in nanoseconds
+	 */
+	static void renderTime(Graphics canvas, LabelFormatter labels, GraphConfiguration config,
+												 int width, int height, int y0, long start, long span) {
+		renderAxis(canvas, config, width, height, y0);
+
+		int tickDistance = config.getTickDistance();
+		if (tickDistance > 0 && span > 0 && width > 0) {
+			long step = timeStep((double) span * tickDistance / width);
+			double pixelsPerNano = (double) width / span;
+			int skip = Math.max(1, config.getTickSkip());
+
+			long tick = Math.floorDiv(start + step - 1, step);
+			for (int tickPixel = (int) ((tick * step - start) * pixelsPerNano);
+					 tickPixel < width;
+					 tickPixel = (int) ((++tick * step - start) * pixelsPerNano)) {
+				canvas.drawLine(tickPixel, y0, tickPixel, y0 + 2);
+				if (config.getEnableTickLabels() && tick % skip == 0)
+					labels.drawSeconds(canvas, tick * step,
+														 tickPixel, y0 + 3 + config.getLabelFont().getSize());
+			}
+		}
+
+		/* Graph label */
+		canvas.drawString(config.getLabelValue(), 1, y0 - 2);
+	}
+
+	/**
+	 * Draw the background, border and horizontal axis.
+	 */
+	private static void renderAxis(Graphics canvas, GraphConfiguration config,
+																 int width, int height, int y0) {
+		/* Background */
+		canvas.setColor(config.getBackgroundColor());
+		canvas.fillRect(0, 0, width, height);
+
+		/* Border */
+		canvas.setColor(config.getBorderColor());
+		canvas.drawRect(0, 0, width, height);
+
+		/* Horizontal axis */
+		canvas.setColor(config.getAxisColor());
+		canvas.setFont(config.getLabelFont());
+		canvas.drawLine(0, y0, width, y0);
+	}
+
+	/**
+	 * Round a time step up to 1, 2 or 5 times a power of ten.
+	 *
+	 * @param minimum The smallest acceptable step, in nanoseconds
+	 */
+	private static long timeStep(double minimum) {
+		long step = 1;
+		while (true) {
+			if (step >= minimum)
+				return step;
+			if (2 * step >= minimum)
+				return 2 * step;
+			if (5 * step >= minimum)
+				return 5 * step;
+			step *= 10;
+		}
+	}
+
+	/**
+	 * Get the pixel column of a sample index, counting from the first
+	 * sample ever added. Subtracting the column of the first visible
+	 * sample gives a position on the screen that stays on the same grid
+	 * as the graph scrolls. The column is a long, since it passes
+	 * Integer.MAX_VALUE after a few hundred million samples.
+	 *
+	 * @param index The sample index
+	 * @param pixelsPerSample The horizontal scale of the graph
+	 */
+	static long indexToPixel(long index, double pixelsPerSample) {
+		return (long) (index * pixelsPerSample);
+	}
+
+	/**
+	 * Get the position on the screen of a sample index.
+	 *
+	 * @param index The sample index
+	 * @param firstPixel The column of the sample at the left edge of the
+	 * graph, from {@link #indexToPixel}
+	 * @param pixelsPerSample The horizontal scale of the graph
+	 */
+	static int indexToX(long index, long firstPixel, double pixelsPerSample) {
+		return clampPixel(indexToPixel(index, pixelsPerSample) - firstPixel);
+	}
+
+	/**
+	 * Narrow a pixel offset to an int. Offsets this large only belong to
+	 * points far off the screen, which are still drawn on the correct
+	 * side of it.
+	 */
+	static int clampPixel(long pixel) {
+		return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, pixel));
+	}
+
+	/**
+	 * Draw the small circle that marks an inspected sample. The circle
+	 * is drawn as four lines, which rasterize to the same pixels as
+	 * drawOval(x-2, y-2, 4, 4) but, unlike drawOval, do not allocate a
+	 * shape every frame.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 * @param x The X of the center of the circle
+	 * @param y The Y of the center of the circle
+	 */
+	static void drawMarker(Graphics canvas, int x, int y) {
+		canvas.drawLine(x-1, y-2, x+1, y-2);
+		canvas.drawLine(x-1, y+2, x+1, y+2);
+		canvas.drawLine(x-2, y-1, x-2, y+1);
+		canvas.drawLine(x+2, y-1, x+2, y+1);
+	}
+
+	/**
+	 * Mark the area an inspector covers as needing a repaint: the
+	 * marker, the lines to each axis and the labels at their ends. This
+	 * matches what the graphs' paintInspector methods draw.
+	 *
+	 * @param component The graph the inspector is drawn on
+	 * @param labels The formatter the labels are drawn with
+	 * @param gc The configuration of the graph
+	 * @param x The X of the inspected sample
+	 * @param y The Y of the inspected sample
+	 * @param y0 The Y of the horizontal axis
+	 * @param value The value of the inspected sample
+	 * @param index The index of the inspected sample
+	 */
+	static void repaintInspector(Component component, LabelFormatter labels, GraphConfiguration gc,
+															 int x, int y, int y0, double value, long index) {
+		FontMetrics metrics = component.getFontMetrics(gc.getLabelFont());
+		int right = Math.max(x + 3, Math.max(1 + labels.doubleWidth(metrics, value),
+																				 x + 2 + labels.longWidth(metrics, index)));
+		int top = Math.min(y - 2, y0 - 3) - metrics.getAscent() - 1;
+		int bottom = Math.max(y, y0) + Math.max(3, metrics.getDescent()) + 1;
+		component.repaint(0, top, right + 1, bottom - top);
+	}
+
+	/**
+	 * Returns true if the clip of a graphics object covers the whole of
+	 * a graph, as it does for a full repaint or an offscreen render.
+	 *
+	 * @param canvas The graphics object being painted onto
+	 * @param scratch A rectangle to read the clip into, so that checking
+	 * does not allocate
+	 * @param width The width of the graph in pixels
+	 * @param height The height of the graph in pixels
+	 */
+	static boolean clipCovers(Graphics canvas, Rectangle scratch, int width, int height) {
+		/* Graphics without a clip leave the rectangle as it is */
+		scratch.setBounds(0, 0, width, height);
+		canvas.getClipBounds(scratch);
+		return scratch.x <= 0 && scratch.y <= 0 &&
+			scratch.x + scratch.width >= width && scratch.y + scratch.height >= height;
+	}
+}
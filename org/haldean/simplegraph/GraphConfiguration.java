@@ -2,6 +2,7 @@ package org.haldean.simplegraph;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.util.Arrays;
 
 /**
  * A data object that contains configuration parameters
@@ -16,6 +17,15 @@ public class GraphConfiguration {
   private Color axesColor = Color.LIGHT_GRAY;
   private Color inspectorColor = Color.RED;
 
+  /* The colors used for each series of a multi-series graph, in
+   * order. Series without a color of their own cycle through the
+   * default colors */
+  private static final Color[] defaultSeriesColors = {
+	Color.WHITE, Color.CYAN, Color.ORANGE, Color.GREEN,
+	Color.MAGENTA, Color.YELLOW, Color.PINK, new Color(0x66, 0x99, 0xff)
+  };
+  private Color[] seriesColors = new Color[0];
+
   private Font labelFont = new Font(Font.SANS_SERIF, Font.PLAIN, 10);
   private String labelValue = "";
 
@@ -25,6 +35,16 @@ public class GraphConfiguration {
 
   private boolean enableInspector = true;
 
+  private boolean enableDecimation = true;
+
+  private int targetFrameRate = 60;
+
+  private boolean enableIncrementalRendering = false;
+
+  /* Incremented on every change, so that components can tell when an
+   * image drawn with this configuration is out of date */
+  private int version = 0;
+
   /**
    * Create a {@link GraphConfiguration} with the default colors
    * and no label
@@ -54,12 +74,16 @@ public class GraphConfiguration {
 	lineColor = gc.lineColor;
 	axesColor = gc.axesColor;
 	inspectorColor = gc.inspectorColor;
+	seriesColors = gc.seriesColors.clone();
 	labelFont = gc.labelFont;
 	labelValue = gc.labelValue;
 	tickDistance = gc.tickDistance;
 	tickSkip = gc.tickSkip;
 	enableTickLabels = gc.enableTickLabels;
 	enableInspector = gc.enableInspector;
+	enableDecimation = gc.enableDecimation;
+	targetFrameRate = gc.targetFrameRate;
+	enableIncrementalRendering = gc.enableIncrementalRendering;
   }
 
   /**
@@ -67,6 +91,7 @@ public class GraphConfiguration {
    */
   public void setBackgroundColor(Color bg) {
 	backgroundColor = bg;
+	version++;
   }
 
   /**
@@ -82,6 +107,7 @@ public class GraphConfiguration {
    */
   public void setBorderColor(Color border) {
 	borderColor = border;
+	version++;
   }
 
   /**
@@ -96,6 +122,7 @@ public class GraphConfiguration {
    */
   public void setLineColor(Color line) {
 	lineColor = line;
+	version++;
   }
 
   /**
@@ -105,11 +132,40 @@ public class GraphConfiguration {
 	return lineColor;
   }
 
+  /**
+   * Set the color used to draw one series of a multi-series graph.
+   *
+   * @param series The index of the series, starting at zero.
+   * @param color The color of the series's line.
+   */
+  public void setSeriesColor(int series, Color color) {
+	if (series >= seriesColors.length) {
+	  seriesColors = Arrays.copyOf(seriesColors, series + 1);
+	}
+	seriesColors[series] = color;
+	version++;
+  }
+
+  /**
+   * Get the color used to draw one series of a multi-series graph. If
+   * no color has been set for the series, one of a set of default
+   * colors is used.
+   *
+   * @param series The index of the series, starting at zero.
+   */
+  public Color getSeriesColor(int series) {
+	if (series < seriesColors.length && seriesColors[series] != null) {
+	  return seriesColors[series];
+	}
+	return defaultSeriesColors[series % defaultSeriesColors.length];
+  }
+
   /**
    * Set the color of the graph's axes.
    */
   public void setAxisColor(Color axis) {
 	axesColor = axis;
+	version++;
   }
 
   /**
@@ -124,6 +180,7 @@ public class GraphConfiguration {
    */
   public void setInspectorColor(Color bg) {
 	inspectorColor = bg;
+	version++;
   }
 
   /**
@@ -138,6 +195,7 @@ public class GraphConfiguration {
    */
   public void setLabelFont(Font font) {
 	labelFont = font;
+	version++;
   }
 
   /**
@@ -152,6 +210,7 @@ public class GraphConfiguration {
    */
   public void setLabelValue(String text) {
 	labelValue = text;
+	version++;
   }
 
   /**
@@ -167,6 +226,7 @@ public class GraphConfiguration {
    */
   public void setTickDistance(int distance) {
 	tickDistance = distance;
+	version++;
   }
 
   /**
@@ -181,6 +241,7 @@ public class GraphConfiguration {
    */
   public void setEnableTickLabels(boolean enable) {
 	enableTickLabels = enable;
+	version++;
   }
 
   /**
@@ -197,6 +258,7 @@ public class GraphConfiguration {
    */
   public void setTickSkip(int skip) {
 	tickSkip = skip;
+	version++;
   }
 
   /*
@@ -206,6 +268,14 @@ public class GraphConfiguration {
 	return tickSkip;
   }
 
+  /**
+   * Get a number that changes whenever any property of this
+   * configuration is changed.
+   */
+  int getVersion() {
+	return version;
+  }
+
   boolean isTickLabelLocation(double value) {
 	return getEnableTickLabels() &&
 	  value % (tickDistance * tickSkip) == 0;
@@ -216,6 +286,7 @@ public class GraphConfiguration {
    */
   public void setEnableInspector(boolean enable) {
 	enableInspector = enable;
+	version++;
   }
 
   /**
@@ -224,4 +295,60 @@ public class GraphConfiguration {
   public boolean getEnableInspector() {
 	return enableInspector;
   }
+
+  /**
+   * Set to true to reduce large data series to the first, minimum,
+   * maximum and last value of each pixel column before drawing. This
+   * does not change what is drawn, but makes drawing a series with
+   * many more samples than pixels much faster.
+   */
+  public void setEnableDecimation(boolean enable) {
+	enableDecimation = enable;
+	version++;
+  }
+
+  /**
+   * Returns true if large data series are decimated before drawing.
+   */
+  public boolean getEnableDecimation() {
+	return enableDecimation;
+  }
+
+  /**
+   * Set the maximum number of times per second the graph is redrawn
+   * when new values are added. Values that arrive between frames are
+   * drawn together on the next frame. Set to zero to redraw the graph
+   * every time a value is added.
+   */
+  public void setTargetFrameRate(int framesPerSecond) {
+	targetFrameRate = framesPerSecond;
+	version++;
+  }
+
+  /**
+   * Get the maximum number of times per second the graph is redrawn
+   * when new values are added.
+   */
+  public int getTargetFrameRate() {
+	return targetFrameRate;
+  }
+
+  /**
+   * Set to true to have streaming graphs keep their plot in an
+   * offscreen image and scroll it when new values arrive, drawing only
+   * the new values instead of the whole graph. The whole graph is still
+   * redrawn when it is resized or rescaled.
+   */
+  public void setEnableIncrementalRendering(boolean enable) {
+	enableIncrementalRendering = enable;
+	version++;
+  }
+
+  /**
+   * Returns true if streaming graphs scroll their plot instead of
+   * redrawing it.
+   */
+  public boolean getEnableIncrementalRendering() {
+	return enableIncrementalRendering;
+  }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package org.haldean.simplegraph;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -26,6 +28,87 @@ public class GraphFactory {
     return new StreamingGraphComponent<E>(config);
   }
 
+  /**
+   * Get a graph for streaming primitive doubles that uses the default
+   * configuration.
+   */
+  public static DoubleStreamingGraphComponent forDoubleStreamingData() {
+    return forDoubleStreamingData(new GraphConfiguration());
+  }
+
+  /**
+   * Get a graph for streaming primitive doubles. Values are added
+   * without boxing, so producers allocate nothing per sample.
+   *
+   * @param config The configuration to use.
+   */
+  public static DoubleStreamingGraphComponent forDoubleStreamingData(GraphConfiguration config) {
+    return new DoubleStreamingGraphComponent(config);
+  }
+
+  /**
+   * Get a graph for streaming primitive longs that uses the default
+   * configuration.
+   */
+  public static LongStreamingGraphComponent forLongStreamingData() {
+    return forLongStreamingData(new GraphConfiguration());
+  }
+
+  /**
+   * Get a graph for streaming primitive longs. Values are added
+   * without boxing, so producers allocate nothing per sample.
+   *
+   * @param config The configuration to use.
+   */
+  public static LongStreamingGraphComponent forLongStreamingData(GraphConfiguration config) {
+    return new LongStreamingGraphComponent(config);
+  }
+
+  /**
+   * Get a graph for timestamped streaming data that uses the default
+   * configuration.
+   *
+   * @param windowNanos The length of time shown across the graph, in
+   * nanoseconds.
+   */
+  public static TimedStreamingGraphComponent forTimedStreamingData(long windowNanos) {
+    return forTimedStreamingData(windowNanos, new GraphConfiguration());
+  }
+
+  /**
+   * Get a graph for timestamped streaming data, which shows the most
+   * recent window of time with samples placed at their timestamps.
+   *
+   * @param windowNanos The length of time shown across the graph, in
+   * nanoseconds.
+   * @param config The configuration to use.
+   */
+  public static TimedStreamingGraphComponent forTimedStreamingData(long windowNanos,
+                                                                   GraphConfiguration config) {
+    return new TimedStreamingGraphComponent(windowNanos, config);
+  }
+
+  /**
+   * Get a graph for several related feeds of streaming data that uses
+   * the default configuration.
+   *
+   * @param seriesCount The number of series on the graph.
+   */
+  public static MultiStreamingGraphComponent forMultiStreamingData(int seriesCount) {
+    return forMultiStreamingData(seriesCount, new GraphConfiguration());
+  }
+
+  /**
+   * Get a graph for several related feeds of streaming data, drawn on
+   * shared axes.
+   *
+   * @param seriesCount The number of series on the graph.
+   * @param config The configuration to use.
+   */
+  public static MultiStreamingGraphComponent forMultiStreamingData(int seriesCount, GraphConfiguration config) {
+    return new MultiStreamingGraphComponent(seriesCount, config);
+  }
+
   /**
    * Get a graph to represent a list of numbers with the default
    * configuration.
@@ -47,4 +130,121 @@ public class GraphFactory {
     graph.addValueList(values);
     return graph;
   }
-}
\ No newline at end of file
+
+  /**
+   * Get a graph to represent an array of doubles with the default
+   * configuration.
+   *
+   * @param values The values to graph.
+   */
+  public static DoubleStaticGraphComponent forArray(double[] values) {
+    return forArray(values, new GraphConfiguration());
+  }
+
+  /**
+   * Get a graph to represent an array of doubles. The values are
+   * copied without boxing.
+   *
+   * @param values The values to graph.
+   * @param config The configuration to use.
+   */
+  public static DoubleStaticGraphComponent forArray(double[] values, GraphConfiguration config) {
+    DoubleStaticGraphComponent graph = new DoubleStaticGraphComponent(config);
+    graph.addValues(values, 0, values.length);
+    return graph;
+  }
+
+  /**
+   * Get a graph to represent an array of longs with the default
+   * configuration.
+   *
+   * @param values The values to graph.
+   */
+  public static LongStaticGraphComponent forArray(long[] values) {
+    return forArray(values, new GraphConfiguration());
+  }
+
+  /**
+   * Get a graph to represent an array of longs. The values are copied
+   * without boxing.
+   *
+   * @param values The values to graph.
+   * @param config The configuration to use.
+   */
+  public static LongStaticGraphComponent forArray(long[] values, GraphConfiguration config) {
+    LongStaticGraphComponent graph = new LongStaticGraphComponent(config);
+    graph.addValues(values, 0, values.length);
+    return graph;
+  }
+
+  /**
+   * Get a graph of the samples in a binary file with the default
+   * configuration.
+   *
+   * @param file The file holding the samples.
+   * @param layout The binary layout of the samples in the file.
+   * @throws IOException If the file cannot be mapped.
+   */
+  public static StaticGraphComponent<Double> forMappedFile(Path file, SampleLayout layout) throws IOException {
+    return forMappedFile(file, layout, new GraphConfiguration());
+  }
+
+  /**
+   * Get a graph of the samples in a binary file. The file is
+   * memory-mapped rather than read, so the samples stay off the Java
+   * heap. The resulting graph is read-only; values cannot be added to
+   * it.
+   *
+   * Opening the file is cheap, but the min/max index used to draw long
+   * ranges needs one pass over the whole file. That pass runs on a
+   * background thread after the graph is first painted and takes about
+   * as long as reading the file from disk, and the index takes about
+   * 48 bytes of heap per 128 samples. Until it finishes, ranges of more
+   * than about a million samples are drawn from a sparse preview that
+   * can miss short spikes.
+   *
+   * @param file The file holding the samples.
+   * @param layout The binary layout of the samples in the file.
+   * @param config The configuration to use.
+   * @throws IOException If the file cannot be mapped.
+   */
+  public static StaticGraphComponent<Double> forMappedFile(Path file, SampleLayout layout,
+                                                           GraphConfiguration config) throws IOException {
+    return new StaticGraphComponent<Double>(new MappedSeries(file, layout), config);
+  }
+
+  /**
+   * Get a graph of one column of a CSV file with the default
+   * configuration.
+   *
+   * @param file The file holding the values.
+   * @param column The index of the column to graph, where zero is the
+   * first.
+   * @param options How the file is laid out.
+   * @throws IOException If the file cannot be read, or a line has no
+   * number in the column.
+   */
+  public static DoubleStaticGraphComponent forCsv(Path file, int column, CsvOptions options)
+    throws IOException {
+    return forCsv(file, column, options, new GraphConfiguration());
+  }
+
+  /**
+   * Get a graph of one column of a CSV file, or of any other text file
+   * with one sample per line. The file is parsed in parallel on the
+   * pool given in the options, straight into a primitive array, so
+   * there is no boxed copy of the values.
+   *
+   * @param file The file holding the values.
+   * @param column The index of the column to graph, where zero is the
+   * first.
+   * @param options How the file is laid out.
+   * @param config The configuration to use.
+   * @throws IOException If the file cannot be read, or a line has no
+   * number in the column.
+   */
+  public static DoubleStaticGraphComponent forCsv(Path file, int column, CsvOptions options,
+                                                  GraphConfiguration config) throws IOException {
+    return new DoubleStaticGraphComponent(CsvLoader.load(file, column, options), config);
+  }
+}
@@ -0,0 +1,192 @@
+package org.haldean.simplegraph;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Performance counters for a single graph component, published as a
+ * JMX MBean under "org.haldean.simplegraph:type=GraphMetrics,name=...".
+ * Metrics are off until a component's enableMetrics method is called.
+ *
+ * Counters are {@link LongAdder}s and paint times go into a
+ * {@link LatencyHistogram}, so recording never takes a lock and stays
+ * cheap with many producers. The sample rate is worked out from
+ * snapshots of the sample count taken once a second on a shared
+ * background thread, so reading it changes nothing and any number of
+ * JMX clients see the same value.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public class GraphMetrics implements GraphMetricsMBean {
+	private final ObjectName name;
+
+	private final LongAdder samplesIngested = new LongAdder();
+	private final LongAdder repaintsCoalesced = new LongAdder();
+	private final LongAdder producerBlockedNanos = new LongAdder();
+	private final LatencyHistogram paintTimes = new LatencyHistogram();
+
+	/* Updated by the painting thread once per frame */
+	private volatile int seriesLength;
+	private volatile long seriesBytes;
+
+	/* The rate is averaged over this many seconds */
+	private static final int RATE_WINDOW = 5;
+
+	/* Takes the rate snapshots of every graph */
+	private static ScheduledExecutorService ticker;
+
+	/* The sample count and time of the last RATE_WINDOW + 1 snapshots,
+	 * in a ring, and the number of snapshots taken. Guarded by this */
+	private final long[] tickSamples = new long[RATE_WINDOW + 1];
+	private final long[] tickNanos = new long[RATE_WINDOW + 1];
+	private int ticks = 0;
+	private final ScheduledFuture<?> tickTask;
+
+	/**
+	 * Create and register the metrics of a graph.
+	 *
+	 * @param graphName The name of the graph in the object name.
+	 * @throws JMException If the MBean cannot be registered, such as when
+	 * another graph already uses the same name.
+	 */
+	GraphMetrics(String graphName) throws JMException {
+		name = new ObjectName("org.haldean.simplegraph:type=GraphMetrics,name=" +
+													ObjectName.quote(graphName));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		tickTask = ticker().scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					tick();
+				}
+			}, 0, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Get the thread that takes rate snapshots, starting it if needed.
+	 */
+	private static synchronized ScheduledExecutorService ticker() {
+		if (ticker == null) {
+			ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable task) {
+						Thread thread = new Thread(task, "GraphMetrics ticker");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		}
+		return ticker;
+	}
+
+	/**
+	 * Take a snapshot of the sample count for the rate.
+	 */
+	private synchronized void tick() {
+		int slot = ticks % tickSamples.length;
+		tickSamples[slot] = samplesIngested.sum();
+		tickNanos[slot] = System.nanoTime();
+		ticks++;
+	}
+
+	/**
+	 * Remove the MBean from the platform MBean server.
+	 *
+	 * @throws JMException If the MBean cannot be unregistered.
+	 */
+	void unregister() throws JMException {
+		tickTask.cancel(false);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	/**
+	 * Get the name the metrics are registered under.
+	 */
+	public ObjectName getObjectName() {
+		return name;
+	}
+
+	void samplesIngested(long count) {
+		samplesIngested.add(count);
+	}
+
+	void repaintCoalesced() {
+		repaintsCoalesced.increment();
+	}
+
+	void producerBlocked(long nanos) {
+		producerBlockedNanos.add(nanos);
+	}
+
+	void painted(long nanos) {
+		paintTimes.record(nanos);
+	}
+
+	void seriesSize(int length, long bytes) {
+		seriesLength = length;
+		seriesBytes = bytes;
+	}
+
+	public long getSamplesIngested() {
+		return samplesIngested.sum();
+	}
+
+	public synchronized double getSamplesPerSecond() {
+		if (ticks < 2) {
+			return 0;
+		}
+
+		int newest = (ticks - 1) % tickSamples.length;
+		int oldest = ticks > tickSamples.length ? ticks % tickSamples.length : 0;
+		return (tickSamples[newest] - tickSamples[oldest]) * 1e9 /
+			(tickNanos[newest] - tickNanos[oldest]);
+	}
+
+	public int getSeriesLength() {
+		return seriesLength;
+	}
+
+	public long getSeriesBytes() {
+		return seriesBytes;
+	}
+
+	public long getPaintCount() {
+		return paintTimes.count();
+	}
+
+	public double getPaintTimeP50Micros() {
+		return paintTimes.percentile(50) / 1e3;
+	}
+
+	public double getPaintTimeP99Micros() {
+		return paintTimes.percentile(99) / 1e3;
+	}
+
+	public double getPaintTimeMaxMicros() {
+		return paintTimes.maximum() / 1e3;
+	}
+
+	public long getRepaintsCoalesced() {
+		return repaintsCoalesced.sum();
+	}
+
+	public double getProducerBlockedMillis() {
+		return producerBlockedNanos.sum() / 1e6;
+	}
+
+	public synchronized void reset() {
+		samplesIngested.reset();
+		repaintsCoalesced.reset();
+		producerBlockedNanos.reset();
+		paintTimes.reset();
+		ticks = 0;
+	}
+}
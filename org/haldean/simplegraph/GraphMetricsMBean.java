@@ -0,0 +1,74 @@
+package org.haldean.simplegraph;
+
+/**
+ * The management interface of {@link GraphMetrics}, as seen over JMX.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public interface GraphMetricsMBean {
+	/**
+	 * Get the number of samples added to the graph since the metrics were
+	 * enabled or last reset.
+	 */
+	long getSamplesIngested();
+
+	/**
+	 * Get the rate at which samples have been added over the last five
+	 * seconds, in samples per second. The rate is updated once a second,
+	 * and reading it does not reset it. For a rate over another
+	 * interval, sample {@link #getSamplesIngested()} instead.
+	 */
+	double getSamplesPerSecond();
+
+	/**
+	 * Get the number of samples held by the graph, as of the last frame.
+	 */
+	int getSeriesLength();
+
+	/**
+	 * Get the approximate number of bytes of heap the graph uses for its
+	 * samples, copies of them and indexes over them, as of the last
+	 * frame. Memory-mapped files are not counted.
+	 */
+	long getSeriesBytes();
+
+	/**
+	 * Get the number of frames painted.
+	 */
+	long getPaintCount();
+
+	/**
+	 * Get the median time taken to paint a frame, in microseconds.
+	 */
+	double getPaintTimeP50Micros();
+
+	/**
+	 * Get the 99th percentile of the time taken to paint a frame, in
+	 * microseconds.
+	 */
+	double getPaintTimeP99Micros();
+
+	/**
+	 * Get the longest time taken to paint a frame, in microseconds.
+	 */
+	double getPaintTimeMaxMicros();
+
+	/**
+	 * Get the number of repaint requests that were merged into a repaint
+	 * that was already scheduled. Each added sample or batch requests a
+	 * repaint, so this counts requests saved by coalescing, not frames
+	 * that were dropped.
+	 */
+	long getRepaintsCoalesced();
+
+	/**
+	 * Get the total time producers spent waiting for the lock on the
+	 * series, in milliseconds.
+	 */
+	double getProducerBlockedMillis();
+
+	/**
+	 * Reset every counter and the paint-time histogram.
+	 */
+	void reset();
+}
@@ -0,0 +1,182 @@
+package org.haldean.simplegraph;
+
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+
+/**
+ * Draws numeric labels without allocating. Numbers are formatted into
+ * a reused character buffer and drawn with
+ * {@link Graphics#drawChars(char[], int, int, int, int)}, so drawing
+ * tick and inspector labels every frame creates no strings.
+ *
+ * Doubles are written with up to {@link #FRACTION_DIGITS} digits after
+ * the point, and in scientific notation when they are very large or
+ * very small, much like {@link Double#toString(double)}.
+ *
+ * Each instance has its own buffer, so an instance must only be used by
+ * one thread at a time.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class LabelFormatter {
+	private static final int FRACTION_DIGITS = 6;
+	private static final long FRACTION_SCALE = 1000000;
+
+	/* Longer than any formatted long or double */
+	private final char[] buffer = new char[32];
+	private int length;
+
+	/**
+	 * Draw a whole number.
+	 *
+	 * @param canvas The graphics object to draw onto
+	 * @param value The number to draw
+	 * @param x The X of the left edge of the label
+	 * @param y The Y of the baseline of the label
+	 */
+	void drawLong(Graphics canvas, long value, int x, int y) {
+		length = 0;
+		appendLong(value);
+		canvas.drawChars(buffer, 0, length, x, y);
+	}
+
+	/**
+	 * Draw a real number.
+	 *
+	 * @param canvas The graphics object to draw onto
+	 * @param value The number to draw
+	 * @param x The X of the left edge of the label
+	 * @param y The Y of the baseline of the label
+	 */
+	void drawDouble(Graphics canvas, double value, int x, int y) {
+		length = 0;
+		appendDouble(value);
+		canvas.drawChars(buffer, 0, length, x, y);
+	}
+
+	/**
+	 * Draw a duration in seconds, followed by an "s".
+	 *
+	 * @param canvas The graphics object to draw onto
+	 * @param nanos The duration in nanoseconds
+	 * @param x The X of the left edge of the label
+	 * @param y The Y of the baseline of the label
+	 */
+	void drawSeconds(Graphics canvas, long nanos, int x, int y) {
+		length = 0;
+		appendDouble(nanos / 1e9);
+		buffer[length++] = 's';
+		canvas.drawChars(buffer, 0, length, x, y);
+	}
+
+	/**
+	 * Measure the width a whole number would be drawn with.
+	 *
+	 * @param metrics The metrics of the font the label is drawn in
+	 * @param value The number to measure
+	 */
+	int longWidth(FontMetrics metrics, long value) {
+		length = 0;
+		appendLong(value);
+		return metrics.charsWidth(buffer, 0, length);
+	}
+
+	/**
+	 * Measure the width a real number would be drawn with.
+	 *
+	 * @param metrics The metrics of the font the label is drawn in
+	 * @param value The number to measure
+	 */
+	int doubleWidth(FontMetrics metrics, double value) {
+		length = 0;
+		appendDouble(value);
+		return metrics.charsWidth(buffer, 0, length);
+	}
+
+	private void appendDouble(double value) {
+		if (Double.isNaN(value)) {
+			appendText("NaN");
+			return;
+		}
+		if (value < 0 || (value == 0 && 1 / value < 0)) {
+			buffer[length++] = '-';
+			value = -value;
+		}
+		if (Double.isInfinite(value)) {
+			appendText("Infinity");
+			return;
+		}
+
+		if (value == 0 || (value >= 1e-3 && value < 1e7)) {
+			appendFixed(value);
+			return;
+		}
+
+		/* Scientific notation, with one digit before the point */
+		int exponent = (int) Math.floor(Math.log10(value));
+		double mantissa = value / Math.pow(10, exponent);
+		if (Math.round(mantissa * FRACTION_SCALE) >= 10 * FRACTION_SCALE) {
+			mantissa /= 10;
+			exponent++;
+		} else if (mantissa < 1) {
+			mantissa *= 10;
+			exponent--;
+		}
+		appendFixed(mantissa);
+		buffer[length++] = 'E';
+		appendLong(exponent);
+	}
+
+	/**
+	 * Append a non-negative number below 10^7 with a rounded fraction,
+	 * dropping trailing zeros but always keeping one fraction digit.
+	 */
+	private void appendFixed(double value) {
+		long whole = (long) value;
+		long fraction = Math.round((value - whole) * FRACTION_SCALE);
+		if (fraction >= FRACTION_SCALE) {
+			whole++;
+			fraction -= FRACTION_SCALE;
+		}
+
+		appendLong(whole);
+		buffer[length++] = '.';
+
+		int digits = FRACTION_DIGITS;
+		while (digits > 1 && fraction % 10 == 0) {
+			fraction /= 10;
+			digits--;
+		}
+		for (int i = digits - 1; i >= 0; i--) {
+			buffer[length + i] = (char) ('0' + fraction % 10);
+			fraction /= 10;
+		}
+		length += digits;
+	}
+
+	private void appendLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			appendText("-9223372036854775808");
+			return;
+		}
+		if (value < 0) {
+			buffer[length++] = '-';
+			value = -value;
+		}
+
+		int digits = 1;
+		for (long rest = value / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		for (int i = digits - 1; i >= 0; i--) {
+			buffer[length + i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		length += digits;
+	}
+
+	private void appendText(String text) {
+		text.getChars(0, text.length(), buffer, length);
+		length += text.length();
+	}
+}
@@ -0,0 +1,128 @@
+package org.haldean.simplegraph;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of durations, in the style of HdrHistogram.
+ * Each power of two is split into {@link #SUB_BUCKETS} linear buckets,
+ * so every recorded value is kept to within about six percent, with a
+ * fixed amount of memory and no allocation while recording.
+ *
+ * Recording is a single atomic increment, so it is cheap enough to
+ * leave on in production. Reading percentiles walks every bucket, and
+ * is meant for occasional reads such as JMX polling.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/* Enough buckets for any positive long */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong maximum = new AtomicLong();
+
+	/**
+	 * Record one duration.
+	 *
+	 * @param nanos The duration in nanoseconds. Negative durations are
+	 * recorded as zero.
+	 */
+	void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		counts.incrementAndGet(bucket(nanos));
+
+		long max;
+		while (nanos > (max = maximum.get())) {
+			if (maximum.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Get the number of durations recorded.
+	 */
+	long count() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Get the longest duration recorded, in nanoseconds.
+	 */
+	long maximum() {
+		return maximum.get();
+	}
+
+	/**
+	 * Get a percentile of the recorded durations, in nanoseconds. The
+	 * result is the largest value that falls in the same bucket as the
+	 * percentile, so it never understates it.
+	 *
+	 * @param percentile The percentile, between 0 and 100.
+	 * @return The duration, or 0 if nothing has been recorded.
+	 */
+	long percentile(double percentile) {
+		long total = count();
+		if (total == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(highestInBucket(i), maximum.get());
+			}
+		}
+		return maximum.get();
+	}
+
+	/**
+	 * Forget every recorded duration.
+	 */
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		maximum.set(0);
+	}
+
+	/**
+	 * Get the bucket of a non-negative value. Values below
+	 * {@link #SUB_BUCKETS} have a bucket each; above that, the leading
+	 * bit picks the power of two and the next bits the linear bucket
+	 * within it.
+	 */
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Get the largest value that falls in a bucket.
+	 */
+	private static long highestInBucket(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+}
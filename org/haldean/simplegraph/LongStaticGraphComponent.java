@@ -0,0 +1,53 @@
+package org.haldean.simplegraph;
+
+/**
+ *  A component which draws a graph of precomputed whole numbers, such
+ *  as counts. Values are added as primitive longs, so adding them
+ *  allocates nothing per sample.
+ *
+ *  Samples are stored and drawn as doubles, so values larger than 2^53
+ *  are rounded to the nearest double.
+ *
+ *  @author Will Brown (will.h.brown@gmail.com)
+ */
+public class LongStaticGraphComponent extends DoubleStaticGraphComponent {
+	/**
+	 * Create a new {@link LongStaticGraphComponent} with the default
+	 * {@link GraphConfiguration}.
+	 */
+	public LongStaticGraphComponent() {
+		this(new GraphConfiguration());
+	}
+
+	/**
+	 * Create a new {@link LongStaticGraphComponent} with the specified
+	 * {@link GraphConfiguration}.
+	 *
+	 * @param gc The {@link GraphConfiguration} to use.
+	 */
+	public LongStaticGraphComponent(GraphConfiguration gc) {
+		super(gc);
+	}
+
+	/**
+	 * Add a value to the data series and refresh the graph.
+	 *
+	 * @param value The value to add
+	 */
+	public void addValue(long value) {
+		addValue((double) value);
+	}
+
+	/**
+	 * Add a batch of values to the data series and refresh the graph
+	 * once. The values are converted to doubles as they are stored, so
+	 * nothing is allocated.
+	 *
+	 * @param values The array holding the values to add.
+	 * @param off The index of the first value to add.
+	 * @param len The number of values to add.
+	 */
+	public void addValues(long[] values, int off, int len) {
+		addLongs(values, off, len);
+	}
+}
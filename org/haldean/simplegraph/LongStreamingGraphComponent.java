@@ -0,0 +1,56 @@
+package org.haldean.simplegraph;
+
+/**
+ *  A component which draws a graph of a real-time feed of whole
+ *  numbers, such as counters. Values are added as primitive longs, so
+ *  producers allocate nothing per sample.
+ *
+ *  Samples are stored and drawn as doubles, so values larger than 2^53
+ *  are rounded to the nearest double.
+ *
+ *  @author Will Brown (will.h.brown@gmail.com)
+ */
+public class LongStreamingGraphComponent extends DoubleStreamingGraphComponent {
+	/**
+	 * Create a new {@link LongStreamingGraphComponent} with the default
+	 * {@link GraphConfiguration}.
+	 */
+	public LongStreamingGraphComponent() {
+		this(new GraphConfiguration());
+	}
+
+	/**
+	 * Create a new {@link LongStreamingGraphComponent} with the specified
+	 * {@link GraphConfiguration}.
+	 *
+	 * @param gc The {@link GraphConfiguration} to use.
+	 */
+	public LongStreamingGraphComponent(GraphConfiguration gc) {
+		super(gc);
+	}
+
+	/**
+	 * Add a value to the data series. This never waits for the graph to
+	 * be painted, and may be called from any number of threads at once.
+	 *
+	 * @param value The value to add
+	 */
+	public void addValue(long value) {
+		addValue((double) value);
+	}
+
+	/**
+	 * Add a batch of values to the data series. As with
+	 * {@link #addValues(double[], int, int)}, the batch is claimed in the
+	 * pending queue with a single atomic operation and schedules at most
+	 * one repaint. The values are converted to doubles as they are
+	 * queued, so nothing is allocated.
+	 *
+	 * @param values The array holding the values to add.
+	 * @param off The index of the first value to add.
+	 * @param len The number of values to add.
+	 */
+	public void addValues(long[] values, int off, int len) {
+		addLongs(values, off, len);
+	}
+}
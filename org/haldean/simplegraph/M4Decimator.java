@@ -0,0 +1,159 @@
+package org.haldean.simplegraph;
+
+/**
+ * Reduces a data series to the first, minimum, maximum and last value
+ * of every pixel column it covers. Drawing these four values per
+ * column produces the same picture as drawing every sample, but the
+ * cost of drawing depends only on the width of the graph.
+ *
+ * When a {@link SeriesPyramid} is given, the extremes of wide columns
+ * are read from the index instead of from every sample, so decimating
+ * takes time proportional to the width rather than to the series.
+ *
+ * The per-column arrays are reused between calls, so decimating a
+ * series of the same width twice does not allocate.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class M4Decimator {
+	private double[] first = new double[0];
+	private double[] minimum = new double[0];
+	private double[] maximum = new double[0];
+	private double[] last = new double[0];
+
+	/* The number of columns filled by the last call to decimate */
+	private int columns = 0;
+
+	/**
+	 * Reduce a range of samples in the series to one entry per pixel
+	 * column. Sample start + i is assigned to column
+	 * (i * columns / (end - start)), which matches the X axis of the
+	 * graph.
+	 *
+	 * @param series The samples to reduce.
+	 * @param pyramid An index over the series to read column extremes
+	 * from, or null to scan every sample.
+	 * @param start The index of the first sample to reduce.
+	 * @param end The index just after the last sample to reduce. The
+	 * range must hold at least as many samples as there are columns.
+	 * @param columns The number of pixel columns to reduce to.
+	 */
+	void decimate(SampleSeries series, SeriesPyramid pyramid,
+								int start, int end, int columns) {
+		if (first.length < columns) {
+			first = new double[columns];
+			minimum = new double[columns];
+			maximum = new double[columns];
+			last = new double[columns];
+		}
+		this.columns = columns;
+
+		int size = end - start;
+		int columnStart = start;
+		for (int column = 0; column < columns; column++) {
+			int columnEnd = start + (int) (((long) (column + 1) * size + columns - 1) / columns);
+			first[column] = series.get(columnStart);
+			last[column] = series.get(columnEnd - 1);
+
+			/* Columns spanning several index buckets are cheaper to read
+			 * from the index */
+			if (pyramid != null && columnEnd - columnStart > 2 * SeriesPyramid.BUCKET_SIZE) {
+				pyramid.query(series, columnStart, columnEnd);
+				minimum[column] = pyramid.minimum();
+				maximum[column] = pyramid.maximum();
+			} else {
+				double min = first[column];
+				double max = first[column];
+				for (int i = columnStart + 1; i < columnEnd; i++) {
+					double value = series.get(i);
+					if (value < min) {
+						min = value;
+					} else if (value > max) {
+						max = value;
+					}
+				}
+				minimum[column] = min;
+				maximum[column] = max;
+			}
+			columnStart = columnEnd;
+		}
+	}
+
+	/**
+	 * Reduce a range of samples like {@link #decimate}, but from a few
+	 * evenly spaced samples per column instead of every sample, for a
+	 * quick preview of a range too long to read in full. Spikes between
+	 * the samples read are missed.
+	 *
+	 * @param series The samples to reduce.
+	 * @param start The index of the first sample to reduce.
+	 * @param end The index just after the last sample to reduce. The
+	 * range must hold at least as many samples as there are columns.
+	 * @param columns The number of pixel columns to reduce to.
+	 * @param reads The number of samples to read from each column.
+	 */
+	void preview(SampleSeries series, int start, int end, int columns, int reads) {
+		if (first.length < columns) {
+			first = new double[columns];
+			minimum = new double[columns];
+			maximum = new double[columns];
+			last = new double[columns];
+		}
+		this.columns = columns;
+
+		int size = end - start;
+		int columnStart = start;
+		for (int column = 0; column < columns; column++) {
+			int columnEnd = start + (int) (((long) (column + 1) * size + columns - 1) / columns);
+			first[column] = series.get(columnStart);
+			last[column] = series.get(columnEnd - 1);
+
+			double min = Math.min(first[column], last[column]);
+			double max = Math.max(first[column], last[column]);
+			long span = columnEnd - 1 - columnStart;
+			for (int read = 1; read < reads - 1; read++) {
+				double value = series.get(columnStart + (int) (span * read / (reads - 1)));
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+			minimum[column] = min;
+			maximum[column] = max;
+			columnStart = columnEnd;
+		}
+	}
+
+	/**
+	 * Get the number of columns filled by the last decimation.
+	 */
+	int columns() {
+		return columns;
+	}
+
+	/**
+	 * Get the first sample that falls in a column.
+	 */
+	double first(int column) {
+		return first[column];
+	}
+
+	/**
+	 * Get the smallest sample that falls in a column.
+	 */
+	double minimum(int column) {
+		return minimum[column];
+	}
+
+	/**
+	 * Get the largest sample that falls in a column.
+	 */
+	double maximum(int column) {
+		return maximum[column];
+	}
+
+	/**
+	 * Get the last sample that falls in a column.
+	 */
+	double last(int column) {
+		return last[column];
+	}
+}
@@ -0,0 +1,77 @@
+package org.haldean.simplegraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only series of samples stored in a file and memory-mapped
+ * into the address space. The samples are never copied onto the Java
+ * heap; the operating system pages in only the parts of the file that
+ * are actually read.
+ *
+ * A single mapping cannot exceed two gigabytes, so the file is mapped
+ * in chunks of a fixed size. The chunk size is a multiple of every
+ * sample size, so no sample ever straddles two chunks.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class MappedSeries extends SampleSeries {
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private final SampleLayout layout;
+	private final int sampleBytes;
+	private final ByteBuffer[] chunks;
+	private final int size;
+
+	/**
+	 * Map a file of samples.
+	 *
+	 * @param file The file to map. Any trailing bytes that do not make up
+	 * a whole sample are ignored.
+	 * @param layout The binary layout of the samples.
+	 * @throws IOException If the file cannot be opened or mapped, or holds
+	 * more samples than a series can index.
+	 */
+	MappedSeries(Path file, SampleLayout layout) throws IOException {
+		this.layout = layout;
+		sampleBytes = layout.getSampleBytes();
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long length = channel.size();
+			long samples = length / sampleBytes;
+			if (samples > Integer.MAX_VALUE) {
+				throw new IOException(file + " holds " + samples +
+															" samples, more than a graph can index");
+			}
+			size = (int) samples;
+
+			long mappedLength = samples * sampleBytes;
+			chunks = new ByteBuffer[(int) ((mappedLength + CHUNK_MASK) >>> CHUNK_BITS)];
+			for (int i = 0; i < chunks.length; i++) {
+				long start = (long) i << CHUNK_BITS;
+				long chunkLength = Math.min(CHUNK_MASK + 1, mappedLength - start);
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, chunkLength);
+				chunk.order(layout.getByteOrder());
+				chunks[i] = chunk;
+			}
+		} finally {
+			/* The mappings stay valid after the channel is closed */
+			channel.close();
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	double get(int i) {
+		long offset = (long) i * sampleBytes;
+		return layout.read(chunks[(int) (offset >>> CHUNK_BITS)], (int) (offset & CHUNK_MASK));
+	}
+}
@@ -0,0 +1,520 @@
+package org.haldean.simplegraph;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseMotionListener;
+import javax.management.JMException;
+
+/**
+ *  A component which draws several related feeds of real-time data on
+ *  one graph. Every series shares the same axes, ticks and scale, and
+ *  values arrive one row at a time, with one value for each series.
+ *  Each series is drawn in its own color, as set with
+ *  {@link GraphConfiguration#setSeriesColor(int, java.awt.Color)}.
+ *
+ *  @author Will Brown (will.h.brown@gmail.com)
+ */
+public class MultiStreamingGraphComponent extends Component {
+	/* The number of rows that can be added between two frames before
+	 * producers have to drain the pending queue themselves */
+	private static final int PENDING_ROWS = 1 << 12;
+
+	/* One ring buffer of primitive doubles per series. All of them hold
+	 * the same number of samples */
+	private final DoubleRingBuffer[] series;
+	private double maximum = 1;
+	private double minimum = -1;
+
+	private int width;
+	private int height;
+
+	/* Area left at the top and bottom to ensure the graph never quite
+	 * touches the edge, as a percentage of the value range */
+	private double margin = 0.1;
+
+	/* The number of rows visible on the graph */
+	private int sampleCount = 100;
+
+	/* The number of rows added so far */
+	private long lastSampleIndex = 0;
+
+	/* Rows added by producers that have not been moved into the series
+	 * yet, flattened one value per slot. Each row claims its slots in a
+	 * single operation, so rows are never interleaved */
+	private final SampleQueue pending;
+	private final SampleQueue.Sink drainSink = new SampleQueue.Sink() {
+			public void accept(double value) {
+				drainedRow[drainedColumn++] = value;
+				if (drainedColumn < drainedRow.length) {
+					return;
+				}
+
+				for (int s = 0; s < drainedRow.length; s++) {
+					series[s].add(drainedRow[s]);
+					if (drainedRow[s] > maximum)
+						maximum = drainedRow[s];
+					if (drainedRow[s] < minimum)
+						minimum = drainedRow[s];
+				}
+				drainedColumn = 0;
+				lastSampleIndex++;
+				plotVersion++;
+			}
+		};
+
+	/* A drain can stop in the middle of a row that is still being
+	 * published, so values are only moved into the series once their
+	 * whole row has arrived */
+	private final double[] drainedRow;
+	private int drainedColumn = 0;
+
+	/* A copy of the visible rows and the bounds taken at the start of
+	 * each frame, so the series lock is not held while drawing */
+	private double[][] frame;
+	private int frameSize = 0;
+	private long frameFirstIndex = 0;
+	private long frameFirstPixel = 0;
+	private double frameMaximum = 1;
+	private double frameMinimum = -1;
+
+	/* The scale factors of the current frame */
+	private double pixelsPerUnit;
+	private double pixelsPerSample;
+	private int frameY0;
+
+	/* Performance counters, or null unless enabled with enableMetrics */
+	private volatile GraphMetrics metrics;
+
+	/* The points of the polyline drawn for each series, reused between
+	 * series and between frames */
+	private int[] xs = new int[0];
+	private int[] ys = new int[0];
+
+	/* The configuration object that holds the color, font and name of
+	 * the graph */
+	private GraphConfiguration config;
+
+	/* The currently-moused-over x-value */
+	private int currentFocusVertical;
+
+	/* The row in the frame the inspector was last drawn on, or -1 */
+	private int inspectedSample = -1;
+
+	/* Formats the inspector labels without allocating */
+	private final LabelFormatter labels = new LabelFormatter();
+
+	/* The cached background, axis, ticks and label */
+	private GraphBackground background = new GraphBackground();
+
+	/* The cached background and data, which the inspector is drawn over.
+	 * The version is bumped whenever a row arrives or the scale changes */
+	private PlotLayer plotLayer = new PlotLayer();
+	private long plotVersion = 0;
+	private long frameVersion = -1;
+	private final CachedImage.Renderer plotRenderer = new CachedImage.Renderer() {
+			public void render(Graphics2D g) {
+				paintPlot(g);
+			}
+		};
+
+	/**
+	 * Create a new {@link MultiStreamingGraphComponent} with the default
+	 * {@link GraphConfiguration}.
+	 *
+	 * @param seriesCount The number of series on the graph.
+	 */
+	public MultiStreamingGraphComponent(int seriesCount) {
+		this(seriesCount, new GraphConfiguration());
+	}
+
+	/**
+	 * Create a new {@link MultiStreamingGraphComponent} with the
+	 * specified {@link GraphConfiguration}.
+	 *
+	 * @param seriesCount The number of series on the graph.
+	 * @param gc The {@link GraphConfiguration} to use.
+	 */
+	public MultiStreamingGraphComponent(int seriesCount, GraphConfiguration gc) {
+		if (seriesCount < 1) {
+			throw new IllegalArgumentException("A graph needs at least one series");
+		}
+
+		series = new DoubleRingBuffer[seriesCount];
+		drainedRow = new double[seriesCount];
+		frame = new double[seriesCount][0];
+		for (int i = 0; i < seriesCount; i++) {
+			series[i] = new DoubleRingBuffer(sampleCount);
+		}
+		pending = new SampleQueue(PENDING_ROWS * seriesCount);
+
+		config = gc;
+		addComponentListener(new ComponentAdapter() {
+				public void componentResized(ComponentEvent e) {
+					Dimension size = getSize();
+					width = (int) size.getWidth();
+					height = (int) size.getHeight();
+
+					currentFocusVertical = width - 1;
+				}
+			});
+		GraphMouseHandler mouseHandler = new GraphMouseHandler();
+		addMouseListener(mouseHandler);
+		addMouseMotionListener(mouseHandler);
+	}
+
+	/**
+	 * Get the number of series on the graph.
+	 */
+	public int getSeriesCount() {
+		return series.length;
+	}
+
+	/**
+	 * Manually set the maximum. Note that if a data point larger than this
+	 * maximum is added, the graph will automatically scale. This sets a lower
+	 * bound on the actual maximum of the graph.
+	 *
+	 * @param max The lower bound for the maximum
+	 */
+	public void setMaximum(double max) {
+		synchronized (series) {
+			maximum = max;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Manually set the minimum. Note that if a data point smaller than this
+	 * minimum is added, the graph will automatically scale. This sets an upper
+	 * bound on the actual minimum of the graph.
+	 *
+	 * @param min The upper bound for the minimum
+	 */
+	public void setMinimum(double min) {
+		synchronized (series) {
+			minimum = min;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Set the {@link GraphConfiguration} of the graph.
+	 *
+	 * @param gc The configuration to assign.
+	 */
+	public void setGraphConfiguration(GraphConfiguration gc) {
+		config = gc;
+	}
+
+	/**
+	 * Get the {@link GraphConfiguration} of this component.
+	 */
+	public GraphConfiguration getGraphConfiguration() {
+		return config;
+	}
+
+	/**
+	 * Set the scale along the X axis.
+	 *
+	 * @param newSampleCount The number of rows shown along the axis. The
+	 * graph will automatically adjust to show the most recent
+	 * sampleCount rows.
+	 */
+	public void setSampleCount(int newSampleCount) {
+		synchronized (series) {
+			pending.drain(drainSink);
+			sampleCount = newSampleCount;
+			for (DoubleRingBuffer values : series) {
+				values.resize(sampleCount);
+			}
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Add one row of values, one for each series. This never waits for
+	 * the graph to be painted, and may be called from any number of
+	 * threads at once.
+	 *
+	 * @param row The values to add, in series order. Must hold exactly
+	 * one value per series.
+	 */
+	public void addValues(double... row) {
+		if (row.length != series.length) {
+			throw new IllegalArgumentException(
+				"Expected " + series.length + " values, got " + row.length);
+		}
+
+		/* If the pending queue is full, move its rows into the series
+		 * ourselves and try again */
+		long index;
+		while ((index = pending.claim(row.length)) < 0) {
+			GraphMetrics m = metrics;
+			long start = m == null ? 0 : System.nanoTime();
+			synchronized (series) {
+				if (m != null) {
+					m.producerBlocked(System.nanoTime() - start);
+				}
+				pending.drain(drainSink);
+			}
+		}
+
+		for (int i = 0; i < row.length; i++) {
+			pending.publish(index + i, row[i]);
+		}
+
+		boolean scheduled = RenderScheduler.repaint(this, config.getTargetFrameRate());
+
+		GraphMetrics m = metrics;
+		if (m != null) {
+			m.samplesIngested(row.length);
+			if (!scheduled) {
+				m.repaintCoalesced();
+			}
+		}
+	}
+
+	/**
+	 * Start collecting performance metrics for this graph, and publish
+	 * them as a JMX MBean. Calling this again returns the same metrics.
+	 * Every value of a row counts as one sample.
+	 *
+	 * @param name The name of the graph in the MBean's object name.
+	 * @return The metrics of this graph.
+	 * @throws JMException If the MBean cannot be registered.
+	 */
+	public synchronized GraphMetrics enableMetrics(String name) throws JMException {
+		if (metrics == null) {
+			metrics = new GraphMetrics(name);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Stop collecting performance metrics, and unregister the MBean.
+	 *
+	 * @throws JMException If the MBean cannot be unregistered.
+	 */
+	public synchronized void disableMetrics() throws JMException {
+		if (metrics != null) {
+			metrics.unregister();
+			metrics = null;
+		}
+	}
+
+	/**
+	 * Convert a value to a canvas pixel location, using the scale
+	 * computed at the start of the current frame.
+	 *
+	 * @param p The sample value
+	 * @return The number of pixels between the top of the graph and the
+	 * horizontal line representing the given sample value
+	 */
+	private int pointToY(double p) {
+		return (int) ((frameMaximum - (1 - margin) * p) * pixelsPerUnit);
+	}
+
+	/**
+	 * Convert a time-index to a canvas pixel location.
+	 *
+	 * @param x The time index, relative to the first row in the frame
+	 * @return The pixel X corresponding to that time index
+	 */
+	private int pointToX(int x) {
+		return GraphBackground.indexToX(frameFirstIndex + x, frameFirstPixel, pixelsPerSample);
+	}
+
+	/**
+	 * Paints the graph onto the provided graphics object. The background
+	 * and every series come from the cached plot, which is only redrawn
+	 * when new rows have arrived or the scale has changed.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	public void paint(Graphics canvas) {
+		GraphMetrics m = metrics;
+		long paintStart = m == null ? 0 : System.nanoTime();
+
+		/* Resize events are not delivered to offscreen graphs */
+		width = getWidth();
+		height = getHeight();
+
+		synchronized (series) {
+			pending.drain(drainSink);
+
+			/* Nothing needs copying if the data and scale are unchanged */
+			if (plotVersion != frameVersion) {
+				frameVersion = plotVersion;
+				frameSize = series[0].size();
+				for (int s = 0; s < series.length; s++) {
+					if (frame[s].length < frameSize) {
+						frame[s] = new double[series[s].capacity()];
+					}
+					series[s].copyTo(frame[s]);
+				}
+
+				frameFirstIndex = Math.max(0, lastSampleIndex - sampleCount);
+				frameMaximum = maximum;
+				frameMinimum = minimum;
+			}
+
+			if (m != null) {
+				long bytes = pending.memoryFootprint();
+				for (int s = 0; s < series.length; s++) {
+					bytes += 8L * (series[s].capacity() + frame[s].length);
+				}
+				m.seriesSize(series[0].size() * series.length, bytes);
+			}
+		}
+
+		/* Hoist the scale factors out of the drawing loops */
+		pixelsPerUnit = height / (frameMaximum - frameMinimum);
+		pixelsPerSample = (double) width / sampleCount;
+		frameFirstPixel = GraphBackground.indexToPixel(frameFirstIndex, pixelsPerSample);
+
+		/* The Y component of the X axis can shift based on scaling, so
+		 * we calculate it once to save computation */
+		frameY0 = pointToY(0);
+
+		plotLayer.paint(this, canvas, config, width, height, frameVersion, plotRenderer);
+
+		if (config.getEnableInspector()) {
+			paintInspector(canvas);
+		}
+
+		if (m != null) {
+			m.painted(System.nanoTime() - paintStart);
+		}
+	}
+
+	/**
+	 * Paints the background once, and then each series as one polyline.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	private void paintPlot(Graphics canvas) {
+		/* Background, border, axis, ticks and label */
+		background.paint(this, canvas, config, width, height, frameY0,
+										 frameFirstIndex, sampleCount);
+
+		if (frameSize == 0) {
+			return;
+		}
+
+		if (xs.length < frameSize) {
+			xs = new int[frame[0].length];
+			ys = new int[frame[0].length];
+		}
+
+		/* The X coordinates are shared by every series */
+		for (int i = 0; i < frameSize; i++) {
+			xs[i] = pointToX(i);
+		}
+
+		for (int s = 0; s < series.length; s++) {
+			for (int i = 0; i < frameSize; i++) {
+				ys[i] = pointToY(frame[s][i]);
+			}
+
+			canvas.setColor(config.getSeriesColor(s));
+			if (frameSize == 1) {
+				canvas.drawLine(xs[0], ys[0], xs[0], ys[0]);
+			} else {
+				canvas.drawPolyline(xs, ys, frameSize);
+			}
+		}
+	}
+
+	/**
+	 * Find the row the inspector shows for a pixel column: the first row
+	 * drawn at or to the right of it. The row is found from the pixel
+	 * grid of the current frame, so this takes constant time for any
+	 * sample count.
+	 *
+	 * @param x The pixel column under the mouse
+	 * @return The index of the row in the frame, or -1 if there is none
+	 */
+	private int sampleAt(int x) {
+		if (frameSize < 2 || x <= 0) {
+			return -1;
+		}
+
+		/* Estimate the row from the pixel grid, then correct for
+		 * rounding */
+		int i = (int) Math.ceil((x + frameFirstPixel) / pixelsPerSample - frameFirstIndex);
+		i = Math.max(1, Math.min(frameSize, i));
+		while (i > 1 && pointToX(i - 1) >= x) {
+			i--;
+		}
+		while (i < frameSize && pointToX(i) < x) {
+			i++;
+		}
+		return i < frameSize ? i : -1;
+	}
+
+	/**
+	 * Paints the inspector for the row under the mouse over the plot: a
+	 * vertical line labelled with the row's index, and a circle around
+	 * each series' value labelled in that series' color.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	private void paintInspector(Graphics canvas) {
+		int i = sampleAt(currentFocusVertical);
+		inspectedSample = i;
+		if (i < 0) {
+			return;
+		}
+
+		int x = pointToX(i);
+
+		canvas.setFont(config.getLabelFont());
+		canvas.setColor(config.getInspectorColor());
+		canvas.drawLine(x, 0, x, height);
+		labels.drawLong(canvas, frameFirstIndex + i, x + 2, frameY0 - 3);
+
+		for (int s = 0; s < series.length; s++) {
+			int y = pointToY(frame[s][i]);
+
+			canvas.setColor(config.getSeriesColor(s));
+			GraphBackground.drawMarker(canvas, x, y);
+			labels.drawDouble(canvas, frame[s][i], x + 4, y - 2);
+		}
+	}
+
+	private class GraphMouseHandler extends MouseAdapter implements MouseMotionListener {
+		public void mouseExited(MouseEvent e) {
+			moveFocus((int) (0.75 * width) - 1);
+		}
+
+		public void mouseMoved(MouseEvent e) {
+			moveFocus(e.getX());
+		}
+
+		/**
+		 * Move the inspector, repainting only if it lands on a different
+		 * row. The plot itself is not redrawn.
+		 */
+		private void moveFocus(int x) {
+			if (config.getEnableInspector()) {
+				currentFocusVertical = x;
+				if (sampleAt(x) != inspectedSample) {
+					repaint();
+				}
+			}
+		}
+
+		public void mouseDragged(MouseEvent e) {
+			;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package org.haldean.simplegraph;
+
+import java.awt.Graphics2D;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.DebugGraphics;
+
+/**
+ * Checks that painting a graph whose data is changing allocates nothing
+ * once it has reached a steady state, by measuring the bytes allocated
+ * by this thread around each paint with the allocation counters of
+ * {@link com.sun.management.ThreadMXBean}.
+ *
+ * The one allocation that cannot be avoided is made inside Java2D:
+ * every drawPolyline call wraps its point count in a one-element array
+ * of 24 bytes. Each plotted line is allowed that much, and nothing more.
+ *
+ * The JIT can briefly fall back to interpreted code that allocates
+ * while it recompiles a method, so frames are measured in several
+ * rounds and each graph is judged by its best round.
+ *
+ * Run with -Djava.awt.headless=true; exits with a non-zero status if a
+ * check fails.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public class PaintAllocationTest {
+	private static final int WARMUP_FRAMES = 4000;
+	private static final int ROUNDS = 5;
+	private static final int FRAMES = 1000;
+
+	/* Bytes Java2D allocates for each drawPolyline call */
+	private static final long POLYLINE_ALLOWANCE = 24;
+
+	private static com.sun.management.ThreadMXBean threads;
+	private static boolean failed = false;
+
+	public static void main(String args[]) {
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.err.println("This JVM cannot count allocated bytes");
+			System.exit(2);
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		checkLabels();
+		checkPaint();
+
+		if (failed) {
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	private static void checkLabels() {
+		LabelFormatter labels = new LabelFormatter();
+		expect(format(labels, 0), "0.0");
+		expect(format(labels, -0.0), "-0.0");
+		expect(format(labels, 1.5), "1.5");
+		expect(format(labels, -0.125), "-0.125");
+		expect(format(labels, 2.0 / 3), "0.666667");
+		expect(format(labels, 9.9999999), "10.0");
+		expect(format(labels, 1234567.25), "1234567.25");
+		expect(format(labels, 1e7), "1.0E7");
+		expect(format(labels, -2.5e-4), "-2.5E-4");
+		expect(format(labels, Double.NaN), "NaN");
+		expect(format(labels, Double.NEGATIVE_INFINITY), "-Infinity");
+	}
+
+	private static void checkPaint() {
+		GraphConfiguration config = new GraphConfiguration("Allocation");
+		config.setTargetFrameRate(60);
+
+		StreamingGraphComponent<Double> streaming = GraphFactory.forStreamingData(config);
+		streaming.setSampleCount(1000);
+		hover(streaming);
+
+		List<Double> values = new ArrayList<Double>();
+		for (int i=0; i<100000; i++) {
+			values.add(Math.sin(i / 100.0));
+		}
+		StaticGraphComponent<Double> stat = GraphFactory.forList(values, config);
+		hover(stat);
+
+		MultiStreamingGraphComponent multi = GraphFactory.forMultiStreamingData(3, config);
+		hover(multi);
+
+		BufferedImage image = new BufferedImage(800, 300, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		double[] samples = new double[7];
+		double[] row = new double[3];
+		long streamingBytes = Long.MAX_VALUE;
+		long staticBytes = Long.MAX_VALUE;
+		long multiBytes = Long.MAX_VALUE;
+		long roundStreaming = 0, roundStatic = 0, roundMulti = 0;
+
+		for (int frame=0; frame<WARMUP_FRAMES + ROUNDS * FRAMES; frame++) {
+			for (int i=0; i<samples.length; i++) {
+				samples[i] = Math.sin((frame * samples.length + i) / 50.0);
+			}
+			streaming.addValues(samples, 0, samples.length);
+			for (int i=0; i<3; i++) {
+				row[0] = samples[i];
+				row[1] = -samples[i];
+				row[2] = samples[i] / 2;
+				multi.addValues(row);
+			}
+
+			long before = allocated();
+			streaming.paint(g);
+			long afterStreaming = allocated();
+			stat.setViewport(frame % 500, 50000 + frame % 500);
+			stat.paint(g);
+			long afterStatic = allocated();
+			multi.paint(g);
+			long afterMulti = allocated();
+
+			if (frame < WARMUP_FRAMES) {
+				continue;
+			}
+			roundStreaming += afterStreaming - before;
+			roundStatic += afterStatic - afterStreaming;
+			roundMulti += afterMulti - afterStatic;
+			if ((frame - WARMUP_FRAMES) % FRAMES == FRAMES - 1) {
+				streamingBytes = Math.min(streamingBytes, roundStreaming);
+				staticBytes = Math.min(staticBytes, roundStatic);
+				multiBytes = Math.min(multiBytes, roundMulti);
+				roundStreaming = roundStatic = roundMulti = 0;
+			}
+		}
+		g.dispose();
+
+		check("StreamingGraphComponent", streamingBytes / FRAMES, 1);
+		check("StaticGraphComponent", staticBytes / FRAMES, 1);
+		check("MultiStreamingGraphComponent", multiBytes / FRAMES, 3);
+	}
+
+	/* Size the component and put the inspector over it, so that the
+	 * inspector is painted too */
+	private static void hover(java.awt.Component component) {
+		component.setSize(800, 300);
+		component.dispatchEvent(new MouseEvent(component, MouseEvent.MOUSE_MOVED,
+																					 0, 0, 400, 100, 0, false));
+	}
+
+	private static long allocated() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void check(String name, long bytesPerFrame, int polylines) {
+		long allowed = polylines * POLYLINE_ALLOWANCE;
+		System.out.println(name + ": " + bytesPerFrame + " bytes per frame");
+		if (bytesPerFrame > allowed) {
+			System.err.println(name + " allocated " + bytesPerFrame +
+												 " bytes per frame, more than " + allowed);
+			failed = true;
+		}
+	}
+
+	/**
+	 * Draw a real number onto a graphics object that keeps the text
+	 * drawn, and return that text.
+	 */
+	private static String format(LabelFormatter labels, double value) {
+		LabelCapture capture = new LabelCapture();
+		labels.drawDouble(capture, value, 0, 0);
+		return capture.text;
+	}
+
+	/* Keeps the characters of the last label drawn, instead of drawing
+	 * them */
+	private static class LabelCapture extends DebugGraphics {
+		String text;
+
+		public void drawChars(char data[], int offset, int length, int x, int y) {
+			text = new String(data, offset, length);
+		}
+	}
+
+	private static void expect(String actual, String expected) {
+		if (!actual.equals(expected)) {
+			System.err.println("Formatted \"" + actual + "\", expected \"" + expected + "\"");
+			failed = true;
+		}
+	}
+}
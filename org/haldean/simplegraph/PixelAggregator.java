@@ -0,0 +1,206 @@
+package org.haldean.simplegraph;
+
+/**
+ * Folds a stream of samples into buckets of consecutive samples, keeping
+ * only the smallest, largest and last value of each bucket. When the
+ * bucket size is the number of samples per pixel column, this keeps
+ * everything needed to draw the samples, spikes included, in memory
+ * proportional to the width of the graph instead of the number of
+ * samples shown.
+ *
+ * Samples are added to the current bucket, which is stored once it has
+ * as many samples as the bucket size. Changing the bucket size only
+ * affects buckets started afterwards, so buckets of different sizes can
+ * sit side by side; each records the index of its first sample.
+ *
+ * This class is not thread-safe; callers are expected to hold a lock
+ * while they use it.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class PixelAggregator {
+	/* A ring of completed buckets, oldest first */
+	private long[] firsts;
+	private double[] minimums;
+	private double[] maximums;
+	private double[] lasts;
+	private int head = 0;
+	private int size = 0;
+
+	private int bucketSize = 1;
+
+	/* The bucket samples are currently added to */
+	private long currentFirst;
+	private int currentCount = 0;
+	private double currentMinimum;
+	private double currentMaximum;
+	private double currentLast;
+
+	/* The index just after the last sample added */
+	private long nextIndex = 0;
+
+	/**
+	 * Create a new, empty {@link PixelAggregator}.
+	 *
+	 * @param capacity The number of buckets to make room for at first.
+	 * The ring grows as needed.
+	 */
+	PixelAggregator(int capacity) {
+		capacity = Math.max(1, capacity);
+		firsts = new long[capacity];
+		minimums = new double[capacity];
+		maximums = new double[capacity];
+		lasts = new double[capacity];
+	}
+
+	/**
+	 * Set the number of samples in each bucket started from now on.
+	 *
+	 * @param samples The number of samples per bucket.
+	 */
+	void setBucketSize(int samples) {
+		bucketSize = Math.max(1, samples);
+	}
+
+	/**
+	 * Get the number of buckets, counting the current bucket if it holds
+	 * any samples.
+	 */
+	int size() {
+		return currentCount > 0 ? size + 1 : size;
+	}
+
+	/**
+	 * Add a sample to the current bucket. Samples must be added in
+	 * increasing index order without gaps.
+	 *
+	 * @param index The index of the sample.
+	 * @param value The value of the sample.
+	 */
+	void add(long index, double value) {
+		if (currentCount == 0) {
+			currentFirst = index;
+			currentMinimum = value;
+			currentMaximum = value;
+		} else {
+			if (value < currentMinimum)
+				currentMinimum = value;
+			if (value > currentMaximum)
+				currentMaximum = value;
+		}
+		currentLast = value;
+		nextIndex = index + 1;
+
+		if (++currentCount >= bucketSize) {
+			store();
+		}
+	}
+
+	/**
+	 * Remove every bucket that lies wholly before an index.
+	 *
+	 * @param index The index of the oldest sample to keep.
+	 */
+	void evictBefore(long index) {
+		while (size > 0 && end(0) <= index) {
+			head = slot(1);
+			size--;
+		}
+	}
+
+	/**
+	 * Copy every bucket, oldest first and including the current bucket,
+	 * to the start of four arrays.
+	 *
+	 * @param firstDestination Receives the index of each bucket's first
+	 * sample.
+	 * @param minimumDestination Receives the smallest value of each
+	 * bucket.
+	 * @param maximumDestination Receives the largest value of each
+	 * bucket.
+	 * @param lastDestination Receives the last value of each bucket.
+	 */
+	void copyTo(long[] firstDestination, double[] minimumDestination,
+							double[] maximumDestination, double[] lastDestination) {
+		for (int i = 0; i < size; i++) {
+			int slot = slot(i);
+			firstDestination[i] = firsts[slot];
+			minimumDestination[i] = minimums[slot];
+			maximumDestination[i] = maximums[slot];
+			lastDestination[i] = lasts[slot];
+		}
+
+		if (currentCount > 0) {
+			firstDestination[size] = currentFirst;
+			minimumDestination[size] = currentMinimum;
+			maximumDestination[size] = currentMaximum;
+			lastDestination[size] = currentLast;
+		}
+	}
+
+	/**
+	 * Get the approximate number of bytes of heap the buckets take up.
+	 */
+	long memoryFootprint() {
+		return 32L * firsts.length;
+	}
+
+	/**
+	 * Move the current bucket into the ring, doubling the ring if it is
+	 * full.
+	 */
+	private void store() {
+		if (size == firsts.length) {
+			resize(2 * firsts.length);
+		}
+
+		int tail = slot(size);
+		firsts[tail] = currentFirst;
+		minimums[tail] = currentMinimum;
+		maximums[tail] = currentMaximum;
+		lasts[tail] = currentLast;
+		size++;
+		currentCount = 0;
+	}
+
+	/**
+	 * Get the index just after the last sample of a stored bucket.
+	 */
+	private long end(int i) {
+		if (i + 1 < size) {
+			return firsts[slot(i + 1)];
+		}
+		return currentCount > 0 ? currentFirst : nextIndex;
+	}
+
+	private void resize(int capacity) {
+		long[] resizedFirsts = new long[capacity];
+		double[] resizedMinimums = new double[capacity];
+		double[] resizedMaximums = new double[capacity];
+		double[] resizedLasts = new double[capacity];
+		for (int i = 0; i < size; i++) {
+			int slot = slot(i);
+			resizedFirsts[i] = firsts[slot];
+			resizedMinimums[i] = minimums[slot];
+			resizedMaximums[i] = maximums[slot];
+			resizedLasts[i] = lasts[slot];
+		}
+
+		firsts = resizedFirsts;
+		minimums = resizedMinimums;
+		maximums = resizedMaximums;
+		lasts = resizedLasts;
+		head = 0;
+	}
+
+	/**
+	 * Get the physical slot of the i'th bucket from the oldest.
+	 */
+	private int slot(int i) {
+		int slot = head + i;
+		if (slot >= firsts.length) {
+			slot -= firsts.length;
+		}
+		return slot;
+	}
+}
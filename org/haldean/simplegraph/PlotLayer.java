@@ -0,0 +1,60 @@
+package org.haldean.simplegraph;
+
+import java.awt.Component;
+import java.awt.Graphics;
+
+/**
+ * A cached picture of everything a graph draws except its inspector:
+ * the background layer and the data. Moving the mouse only changes the
+ * inspector, so those frames copy the cached plot onto the screen and
+ * draw the inspector over it, without touching the data at all.
+ *
+ * The plot is redrawn when the owner's version number changes, which
+ * the owner bumps whenever its data, scale or viewport change, and when
+ * the size or configuration of the graph changes. The image is kept
+ * in a {@link CachedImage}, in video memory when there is a screen.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class PlotLayer {
+	private final CachedImage image = new CachedImage();
+
+	/* The parameters the cached image was drawn with */
+	private boolean valid = false;
+	private int width;
+	private int height;
+	private long version;
+	private GraphConfiguration config;
+	private int configVersion;
+
+	/**
+	 * Paint the plot onto a canvas, asking the renderer to redraw the
+	 * cached image first if it is out of date.
+	 *
+	 * @param component The component being painted
+	 * @param canvas The graphics object to paint onto
+	 * @param gc The configuration of the graph
+	 * @param width The width of the graph in pixels
+	 * @param height The height of the graph in pixels
+	 * @param version The owner's version of the data and scale
+	 * @param renderer Draws the plot when the image is out of date
+	 */
+	void paint(Component component, Graphics canvas, GraphConfiguration gc,
+						 int width, int height, long version, CachedImage.Renderer renderer) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		boolean stale = !valid || width != this.width || height != this.height ||
+			version != this.version || gc != config || gc.getVersion() != configVersion;
+
+		valid = true;
+		this.width = width;
+		this.height = height;
+		this.version = version;
+		config = gc;
+		configVersion = gc.getVersion();
+
+		image.paint(component, canvas, width, height, stale, renderer);
+	}
+}
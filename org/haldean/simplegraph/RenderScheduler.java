@@ -0,0 +1,143 @@
+package org.haldean.simplegraph;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Coalesces repaint requests from data producers. Producers only mark
+ * a component as dirty; a single Swing timer per frame rate then
+ * repaints each dirty component at most once per frame, no matter how
+ * many values arrived in between.
+ *
+ * Instead of a component, a graph can pass a task that works out which
+ * part of it changed and repaints only that part. The task is run on
+ * the event dispatch thread once per frame in place of the repaint.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class RenderScheduler implements ActionListener {
+	/* One scheduler is shared by every component with the same target
+	 * frame rate */
+	private static final ConcurrentHashMap<Integer, RenderScheduler> schedulers =
+		new ConcurrentHashMap<Integer, RenderScheduler>();
+
+	/* The components and repaint tasks waiting for the next frame */
+	private final Set<Object> dirty = ConcurrentHashMap.newKeySet();
+	private final Timer timer;
+
+	private RenderScheduler(int framesPerSecond) {
+		timer = new Timer(Math.max(1, 1000 / framesPerSecond), this);
+		timer.setCoalesce(true);
+	}
+
+	/**
+	 * Request that a component be repainted. If the frame rate is
+	 * positive, the repaint is deferred to the next frame and coalesced
+	 * with any other requests for the same component; otherwise the
+	 * component is repainted immediately.
+	 *
+	 * @param component The component to repaint.
+	 * @param framesPerSecond The maximum number of repaints per second.
+	 * @return False if the request was merged into a repaint that was
+	 * already scheduled.
+	 */
+	static boolean repaint(Component component, int framesPerSecond) {
+		if (framesPerSecond <= 0) {
+			component.repaint();
+			return true;
+		}
+
+		return forRate(framesPerSecond).markDirty(component);
+	}
+
+	/**
+	 * Request that a repaint task be run. If the frame rate is positive,
+	 * the task is deferred to the next frame and coalesced with any other
+	 * requests for the same task; otherwise it is run as soon as
+	 * possible. Either way it runs on the event dispatch thread.
+	 *
+	 * @param repainter The task that repaints a component.
+	 * @param framesPerSecond The maximum number of runs per second.
+	 * @return False if the request was merged into a run that was
+	 * already scheduled.
+	 */
+	static boolean repaint(Runnable repainter, int framesPerSecond) {
+		if (framesPerSecond <= 0) {
+			if (SwingUtilities.isEventDispatchThread()) {
+				repainter.run();
+			} else {
+				SwingUtilities.invokeLater(repainter);
+			}
+			return true;
+		}
+		return forRate(framesPerSecond).markDirty(repainter);
+	}
+
+	/**
+	 * Get the scheduler shared by everything with a frame rate, creating
+	 * it if needed.
+	 */
+	private static RenderScheduler forRate(int framesPerSecond) {
+		RenderScheduler scheduler = schedulers.get(framesPerSecond);
+		if (scheduler == null) {
+			scheduler = new RenderScheduler(framesPerSecond);
+			RenderScheduler existing = schedulers.putIfAbsent(framesPerSecond, scheduler);
+			if (existing != null) {
+				scheduler = existing;
+			}
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Mark a component or repaint task as needing a repaint on the next
+	 * frame.
+	 *
+	 * @return False if it was already marked.
+	 */
+	private boolean markDirty(Object target) {
+		/* Only the first request in a frame has to make sure the timer is
+		 * running; the rest are no-ops */
+		if (!dirty.add(target)) {
+			return false;
+		}
+
+		synchronized (this) {
+			if (!timer.isRunning()) {
+				timer.start();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Called by the timer on the event dispatch thread once per frame.
+	 */
+	public void actionPerformed(ActionEvent e) {
+		/* Stop ticking while nothing is dirty, so an idle scheduler does
+		 * not keep the event queue busy */
+		synchronized (this) {
+			if (dirty.isEmpty()) {
+				timer.stop();
+				return;
+			}
+		}
+
+		Iterator<Object> targets = dirty.iterator();
+		while (targets.hasNext()) {
+			Object target = targets.next();
+			targets.remove();
+			if (target instanceof Runnable) {
+				((Runnable) target).run();
+			} else {
+				((Component) target).repaint();
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.haldean.simplegraph;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The binary layout of the samples in a file: the type of each sample
+ * and the order of its bytes. Samples are expected to be packed one
+ * after the other with no header or padding.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public enum SampleLayout {
+	/** 32-bit IEEE 754 floats, least significant byte first */
+	FLOAT_LE(4, ByteOrder.LITTLE_ENDIAN),
+	/** 32-bit IEEE 754 floats, most significant byte first */
+	FLOAT_BE(4, ByteOrder.BIG_ENDIAN),
+	/** 64-bit IEEE 754 doubles, least significant byte first */
+	DOUBLE_LE(8, ByteOrder.LITTLE_ENDIAN),
+	/** 64-bit IEEE 754 doubles, most significant byte first */
+	DOUBLE_BE(8, ByteOrder.BIG_ENDIAN),
+	/** 32-bit two's complement integers, least significant byte first */
+	INT_LE(4, ByteOrder.LITTLE_ENDIAN),
+	/** 32-bit two's complement integers, most significant byte first */
+	INT_BE(4, ByteOrder.BIG_ENDIAN),
+	/** 64-bit two's complement integers, least significant byte first */
+	LONG_LE(8, ByteOrder.LITTLE_ENDIAN),
+	/** 64-bit two's complement integers, most significant byte first */
+	LONG_BE(8, ByteOrder.BIG_ENDIAN);
+
+	private final int bytes;
+	private final ByteOrder order;
+
+	private SampleLayout(int bytes, ByteOrder order) {
+		this.bytes = bytes;
+		this.order = order;
+	}
+
+	/**
+	 * Get the number of bytes taken by each sample.
+	 */
+	public int getSampleBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Get the order of the bytes within each sample.
+	 */
+	public ByteOrder getByteOrder() {
+		return order;
+	}
+
+	/**
+	 * Read one sample from a buffer whose byte order has already been set
+	 * to {@link #getByteOrder()}.
+	 *
+	 * @param buffer The buffer to read from.
+	 * @param position The byte offset of the sample in the buffer.
+	 */
+	double read(ByteBuffer buffer, int position) {
+		switch (this) {
+		case FLOAT_LE:
+		case FLOAT_BE:
+			return buffer.getFloat(position);
+		case DOUBLE_LE:
+		case DOUBLE_BE:
+			return buffer.getDouble(position);
+		case INT_LE:
+		case INT_BE:
+			return buffer.getInt(position);
+		default:
+			return buffer.getLong(position);
+		}
+	}
+}
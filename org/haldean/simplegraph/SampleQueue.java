@@ -0,0 +1,130 @@
+package org.haldean.simplegraph;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue of samples with many producers and a
+ * single consumer. Producers claim slots with a compare-and-set on the
+ * tail counter and publish each slot once it is written; the consumer
+ * drains published slots in order. Neither side ever blocks the other.
+ *
+ * Only one thread may drain the queue at a time; callers are expected
+ * to serialize calls to {@link #drain(Sink)} with a lock.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class SampleQueue {
+	/**
+	 * Receives the samples drained from a {@link SampleQueue}.
+	 */
+	interface Sink {
+		void accept(double value);
+	}
+
+	private final double[] values;
+	private final int mask;
+
+	/* Slot i holds a published sample when its sequence is one more than
+	 * the index of the sample in the stream */
+	private final AtomicLongArray sequence;
+
+	/* The index of the next sample to be claimed by a producer */
+	private final AtomicLong tail = new AtomicLong();
+
+	/* The index of the next sample to be drained. Only the consumer
+	 * writes this; producers read it to find free slots */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * Create a new, empty {@link SampleQueue}.
+	 *
+	 * @param capacity The number of samples the queue can hold before
+	 * producers have to wait for it to be drained. Rounded up to a power
+	 * of two.
+	 */
+	SampleQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		values = new double[size];
+		sequence = new AtomicLongArray(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Claim a run of consecutive slots. Each claimed slot must then be
+	 * filled with {@link #publish(long, double)}.
+	 *
+	 * @param count The number of slots to claim.
+	 * @return The stream index of the first claimed slot, or -1 if the
+	 * queue does not have room for all of them.
+	 */
+	long claim(int count) {
+		while (true) {
+			long t = tail.get();
+			if (t + count - head.get() > values.length) {
+				return -1;
+			}
+			if (tail.compareAndSet(t, t + count)) {
+				return t;
+			}
+		}
+	}
+
+	/**
+	 * Fill a claimed slot and make it visible to the consumer.
+	 *
+	 * @param index The stream index returned by {@link #claim(int)}, plus
+	 * the offset of this sample within the claimed run.
+	 * @param value The sample value.
+	 */
+	void publish(long index, double value) {
+		int slot = (int) index & mask;
+		values[slot] = value;
+		sequence.lazySet(slot, index + 1);
+	}
+
+	/**
+	 * Add a single sample to the queue.
+	 *
+	 * @param value The sample value.
+	 * @return False if the queue is full.
+	 */
+	boolean offer(double value) {
+		long index = claim(1);
+		if (index < 0) {
+			return false;
+		}
+		publish(index, value);
+		return true;
+	}
+
+	/**
+	 * Hand every published sample to a sink, in the order the samples
+	 * were claimed. Draining stops early at a slot that has been claimed
+	 * but not yet published.
+	 *
+	 * @param sink The sink to receive the samples.
+	 * @return The number of samples drained.
+	 */
+	int drain(Sink sink) {
+		long h = head.get();
+		long start = h;
+		while (true) {
+			int slot = (int) h & mask;
+			if (sequence.get(slot) != h + 1) {
+				break;
+			}
+			sink.accept(values[slot]);
+			h++;
+		}
+		head.lazySet(h);
+		return (int) (h - start);
+	}
+
+	/**
+	 * Get the approximate number of bytes of heap the queue holds.
+	 */
+	long memoryFootprint() {
+		return 16L * values.length;
+	}
+}
@@ -0,0 +1,42 @@
+package org.haldean.simplegraph;
+
+/**
+ * A series of samples that can be read by index, wherever they are
+ * stored.
+ *
+ * Implementations are not thread-safe; callers are expected to hold a
+ * lock on the series while they use it.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+abstract class SampleSeries {
+	/**
+	 * Get the number of samples in the series.
+	 */
+	abstract int size();
+
+	/**
+	 * Get a sample by its index.
+	 *
+	 * @param i The index of the sample.
+	 */
+	abstract double get(int i);
+
+	/**
+	 * Append a sample to the end of the series. Series that cannot grow
+	 * throw an {@link UnsupportedOperationException}.
+	 *
+	 * @param value The sample to append.
+	 */
+	void add(double value) {
+		throw new UnsupportedOperationException("This series is read-only");
+	}
+
+	/**
+	 * Get the approximate number of bytes of heap the samples take up.
+	 * Series that keep their samples off the heap return zero.
+	 */
+	long memoryFootprint() {
+		return 0;
+	}
+}
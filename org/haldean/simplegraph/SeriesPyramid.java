@@ -0,0 +1,237 @@
+package org.haldean.simplegraph;
+
+import java.util.Arrays;
+
+/**
+ * A multi-resolution index over a {@link SampleSeries}, in the style of
+ * a mipmap. Level zero holds the minimum, maximum and sum of each
+ * bucket of {@link #BUCKET_SIZE} samples, and each further level
+ * combines pairs of buckets from the level below, so bucket sizes grow
+ * in powers of two.
+ *
+ * The extremes of any range of samples can then be found from at most
+ * two partial buckets of raw samples plus a couple of index entries per
+ * level, no matter how long the range is. Drawing a graph of any zoom
+ * level therefore reads a number of entries proportional to its width,
+ * not to the number of samples it shows.
+ *
+ * Queries leave their result in {@link #minimum()}, {@link #maximum()}
+ * and {@link #sum()}, so that they do not allocate. This class is not
+ * thread-safe; callers are expected to hold the lock of the series.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class SeriesPyramid {
+	private static final int SHIFT = 7;
+	static final int BUCKET_SIZE = 1 << SHIFT;
+	private static final int MASK = BUCKET_SIZE - 1;
+
+	/* Per-level bucket aggregates. Level L bucket b covers the samples
+	 * from b << (SHIFT + L) up to, but not including,
+	 * (b + 1) << (SHIFT + L) */
+	private double[][] minimums = new double[0][];
+	private double[][] maximums = new double[0][];
+	private double[][] sums = new double[0][];
+	private int[] counts = new int[0];
+
+	/* The number of samples of the series covered by the index */
+	private int indexed = 0;
+
+	/* The result of the last query */
+	private double queryMinimum;
+	private double queryMaximum;
+	private double querySum;
+
+	/**
+	 * Extend the index to cover samples appended to the series since the
+	 * last update. Only the buckets touched by new samples are
+	 * recomputed, so calling this after every append is cheap.
+	 *
+	 * @param series The series being indexed.
+	 */
+	void update(SampleSeries series) {
+		update(series, series.size());
+	}
+
+	/**
+	 * Extend the index to cover the samples of the series up to a given
+	 * index, so that a long series can be indexed a block at a time.
+	 *
+	 * @param series The series being indexed.
+	 * @param end The index just after the last sample to cover.
+	 */
+	void update(SampleSeries series, int end) {
+		int size = Math.min(end, series.size());
+		if (size <= indexed) {
+			return;
+		}
+
+		/* Fold the new samples into the level zero buckets */
+		ensureLevel(0, ((size - 1) >>> SHIFT) + 1);
+		double[] min = minimums[0];
+		double[] max = maximums[0];
+		double[] sum = sums[0];
+		for (int i = indexed; i < size; i++) {
+			double value = series.get(i);
+			int bucket = i >>> SHIFT;
+			if ((i & MASK) == 0) {
+				min[bucket] = value;
+				max[bucket] = value;
+				sum[bucket] = value;
+			} else {
+				min[bucket] = Math.min(min[bucket], value);
+				max[bucket] = Math.max(max[bucket], value);
+				sum[bucket] += value;
+			}
+		}
+
+		/* Recompute the parents of every touched bucket, one level at a
+		 * time, until a level has a single bucket */
+		int first = indexed >>> SHIFT;
+		int last = (size - 1) >>> SHIFT;
+		for (int level = 1; counts[level - 1] > 1; level++) {
+			first >>>= 1;
+			last >>>= 1;
+			ensureLevel(level, last + 1);
+
+			int childCount = counts[level - 1];
+			double[] childMin = minimums[level - 1];
+			double[] childMax = maximums[level - 1];
+			double[] childSum = sums[level - 1];
+			for (int bucket = first; bucket <= last; bucket++) {
+				int left = 2 * bucket;
+				int right = left + 1;
+				if (right < childCount) {
+					minimums[level][bucket] = Math.min(childMin[left], childMin[right]);
+					maximums[level][bucket] = Math.max(childMax[left], childMax[right]);
+					sums[level][bucket] = childSum[left] + childSum[right];
+				} else {
+					minimums[level][bucket] = childMin[left];
+					maximums[level][bucket] = childMax[left];
+					sums[level][bucket] = childSum[left];
+				}
+			}
+		}
+
+		indexed = size;
+	}
+
+	/**
+	 * Get the number of samples at the start of the series that the
+	 * index covers.
+	 */
+	int indexed() {
+		return indexed;
+	}
+
+	/**
+	 * Find the minimum, maximum and sum of a range of samples. The
+	 * results are read with {@link #minimum()}, {@link #maximum()} and
+	 * {@link #sum()}. The range must be covered by the index and must not
+	 * be empty.
+	 *
+	 * @param series The series being indexed.
+	 * @param start The index of the first sample in the range.
+	 * @param end The index just after the last sample in the range.
+	 */
+	void query(SampleSeries series, int start, int end) {
+		queryMinimum = Double.POSITIVE_INFINITY;
+		queryMaximum = Double.NEGATIVE_INFINITY;
+		querySum = 0;
+
+		/* The whole buckets inside the range */
+		int low = (start + MASK) >>> SHIFT;
+		int high = end >>> SHIFT;
+		if (low >= high) {
+			scan(series, start, end);
+			return;
+		}
+
+		/* Read the partial buckets at either end directly */
+		scan(series, start, low << SHIFT);
+		scan(series, high << SHIFT, end);
+
+		/* Cover the whole buckets with as few index entries as possible,
+		 * climbing a level each time both ends are aligned to a pair */
+		for (int level = 0; low < high; level++) {
+			if ((low & 1) != 0) {
+				include(level, low++);
+			}
+			if ((high & 1) != 0) {
+				include(level, --high);
+			}
+			low >>>= 1;
+			high >>>= 1;
+		}
+	}
+
+	/**
+	 * Get the smallest sample found by the last query.
+	 */
+	double minimum() {
+		return queryMinimum;
+	}
+
+	/**
+	 * Get the largest sample found by the last query.
+	 */
+	double maximum() {
+		return queryMaximum;
+	}
+
+	/**
+	 * Get the sum of the samples covered by the last query.
+	 */
+	double sum() {
+		return querySum;
+	}
+
+	/**
+	 * Get the approximate number of bytes of heap the index takes up.
+	 */
+	long memoryFootprint() {
+		long bytes = 0;
+		for (int level = 0; level < counts.length; level++) {
+			bytes += 24L * minimums[level].length;
+		}
+		return bytes;
+	}
+
+	private void scan(SampleSeries series, int start, int end) {
+		for (int i = start; i < end; i++) {
+			double value = series.get(i);
+			queryMinimum = Math.min(queryMinimum, value);
+			queryMaximum = Math.max(queryMaximum, value);
+			querySum += value;
+		}
+	}
+
+	private void include(int level, int bucket) {
+		queryMinimum = Math.min(queryMinimum, minimums[level][bucket]);
+		queryMaximum = Math.max(queryMaximum, maximums[level][bucket]);
+		querySum += sums[level][bucket];
+	}
+
+	/**
+	 * Make sure a level exists and can hold the given number of buckets.
+	 */
+	private void ensureLevel(int level, int buckets) {
+		if (level >= counts.length) {
+			minimums = Arrays.copyOf(minimums, level + 1);
+			maximums = Arrays.copyOf(maximums, level + 1);
+			sums = Arrays.copyOf(sums, level + 1);
+			counts = Arrays.copyOf(counts, level + 1);
+			minimums[level] = new double[0];
+			maximums[level] = new double[0];
+			sums[level] = new double[0];
+		}
+
+		if (minimums[level].length < buckets) {
+			int capacity = Math.max(buckets, minimums[level].length * 2);
+			minimums[level] = Arrays.copyOf(minimums[level], capacity);
+			maximums[level] = Arrays.copyOf(maximums[level], capacity);
+			sums[level] = Arrays.copyOf(sums[level], capacity);
+		}
+		counts[level] = Math.max(counts[level], buckets);
+	}
+}
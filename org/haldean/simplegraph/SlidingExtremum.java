@@ -0,0 +1,123 @@
+package org.haldean.simplegraph;
+
+/**
+ * Tracks the largest (or smallest) value in a sliding window of
+ * samples. Samples are kept in a monotonic deque: a new sample removes
+ * every older sample it beats, because those can never be the extremum
+ * again, and samples that leave the window are removed from the front.
+ * Both operations are amortized constant time, and reading the
+ * extremum is constant time.
+ *
+ * This class is not thread-safe; callers are expected to hold a lock
+ * while they use it.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class SlidingExtremum {
+	private final boolean maximum;
+
+	/* A ring of (sample index, value) pairs, in increasing index order
+	 * and strictly decreasing (for a maximum) value order */
+	private long[] indices;
+	private double[] values;
+	private int head = 0;
+	private int size = 0;
+
+	/**
+	 * Create a new, empty {@link SlidingExtremum}.
+	 *
+	 * @param maximum True to track the largest value, false to track the
+	 * smallest.
+	 * @param capacity The number of samples in the window.
+	 */
+	SlidingExtremum(boolean maximum, int capacity) {
+		this.maximum = maximum;
+		indices = new long[Math.max(1, capacity)];
+		values = new double[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Returns true if no samples are in the window.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Get the extremum of the samples in the window. Only valid when the
+	 * window is not empty.
+	 */
+	double get() {
+		return values[head];
+	}
+
+	/**
+	 * Add a sample to the window. Samples must be added in increasing
+	 * index order, and old samples must be evicted so that the window
+	 * never holds more samples than its capacity.
+	 *
+	 * @param index The index of the sample.
+	 * @param value The value of the sample.
+	 */
+	void add(long index, double value) {
+		while (size > 0 && !beats(values[slot(size - 1)], value)) {
+			size--;
+		}
+
+		int tail = slot(size);
+		indices[tail] = index;
+		values[tail] = value;
+		size++;
+	}
+
+	/**
+	 * Remove every sample older than the given index from the window.
+	 *
+	 * @param index The index of the oldest sample to keep.
+	 */
+	void evictBefore(long index) {
+		while (size > 0 && indices[head] < index) {
+			head = slot(1);
+			size--;
+		}
+	}
+
+	/**
+	 * Change the number of samples the window can hold. The window must
+	 * already have been trimmed to the new capacity.
+	 *
+	 * @param capacity The new capacity.
+	 */
+	void resize(int capacity) {
+		capacity = Math.max(1, Math.max(size, capacity));
+		long[] resizedIndices = new long[capacity];
+		double[] resizedValues = new double[capacity];
+		for (int i = 0; i < size; i++) {
+			resizedIndices[i] = indices[slot(i)];
+			resizedValues[i] = values[slot(i)];
+		}
+
+		indices = resizedIndices;
+		values = resizedValues;
+		head = 0;
+	}
+
+	/**
+	 * Returns true if a value already in the window should stay ahead of
+	 * a newer value.
+	 */
+	private boolean beats(double older, double newer) {
+		return maximum ? older > newer : older < newer;
+	}
+
+	/**
+	 * Get the physical slot of the i'th entry from the front.
+	 */
+	private int slot(int i) {
+		int slot = head + i;
+		if (slot >= indices.length) {
+			slot -= indices.length;
+		}
+		return slot;
+	}
+}
@@ -0,0 +1,388 @@
+package org.haldean.simplegraph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records every sample a streaming graph receives to an append-only
+ * binary log, so that what the graph showed can be replayed later with
+ * a {@link StreamReplayer}. Attach a recorder to a graph with
+ * {@link DoubleStreamingGraphComponent#setRecorder(StreamRecorder)}.
+ *
+ * Samples are recorded as the graph moves them out of its pending
+ * queue, not as producers add them, so recording adds nothing to
+ * {@link DoubleStreamingGraphComponent#addValue(double)}. Each batch of
+ * samples moved at once is written as a block that starts with the time
+ * it was recorded. Painting is not relied on to move samples, since a
+ * hidden graph is never painted: while attached to a graph, the
+ * recorder also moves them every {@link #DRAIN_MILLIS} milliseconds on a
+ * thread of its own, so samples are timestamped to within about that
+ * long of when they were added.
+ *
+ * Blocks are gathered in direct buffers and written to disk by a
+ * background thread through a {@link FileChannel}. A buffer is written
+ * when it fills, or when a new block arrives more than a second after
+ * the buffer was started. When the current file would grow past the
+ * size limit, a new file is started. Files are named by the prefix and
+ * a sequence number, such as "incident-000001.sgr". Files are never
+ * overwritten, so a recorder cannot be created with the prefix of a log
+ * that is still in the directory. Each file holds:
+ *
+ * <pre>
+ *   int   magic ("SGR1")
+ *   long  session, a random number shared by every file of a recording
+ *   int   the sequence number of the file
+ *   then, for each block:
+ *   long   System.nanoTime() when the block was recorded
+ *   int    sample count
+ *   double samples[count]
+ * </pre>
+ *
+ * The recorder never waits for the disk, since it runs with the graph's
+ * lock held and waiting would hold up both painting and producers. If
+ * the disk falls behind by more than the buffers can hold, samples are
+ * dropped until a buffer is free again, and counted in
+ * {@link #getDroppedSamples()}.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public class StreamRecorder implements Closeable {
+	static final int MAGIC = 0x53475231;
+	static final String SUFFIX = ".sgr";
+
+	/* The bytes in front of the first block of each file */
+	static final int FILE_HEADER = 16;
+
+	/* The size of each buffer, which is also the largest a block can be */
+	static final int BUFFER_SIZE = 1 << 16;
+	private static final int BUFFERS = 4;
+
+	/* The bytes in front of each block's samples */
+	static final int BLOCK_HEADER = 12;
+
+	/* A partly filled buffer is handed to the writer once it holds
+	 * blocks older than this, so a slow stream still reaches the disk */
+	private static final long FLUSH_NANOS = 1000000000L;
+
+	/** How often the graph being recorded is drained, in milliseconds. */
+	public static final int DRAIN_MILLIS = 5;
+
+	private final Path directory;
+	private final String prefix;
+	private final long maxFileBytes;
+
+	/* Buffers ready to be filled, and full buffers waiting to be
+	 * written. An empty buffer in the full queue tells the writer to
+	 * stop */
+	private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<ByteBuffer>(BUFFERS);
+	private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<ByteBuffer>(BUFFERS + 1);
+	private final Thread writer;
+
+	/* Moves the pending samples of the graph being recorded, or null
+	 * while the recorder is not attached, and the thread that runs it */
+	private volatile Runnable drainer;
+	private final Thread drainThread;
+
+	/* The buffer being filled, or null while every buffer is waiting to
+	 * be written, and the block being added to, if any. These are only
+	 * touched by the graph, with its lock held */
+	private ByteBuffer current;
+	private boolean inBlock = false;
+	private int blockStart;
+	private int blockCount;
+	private long bufferStarted;
+
+	/* The file being written, which only the writer touches. The
+	 * channel is null once a new file could not be started, and nothing
+	 * more is written */
+	private final long session = ThreadLocalRandom.current().nextLong();
+	private FileChannel channel;
+	private int fileNumber = 0;
+	private long fileBytes;
+
+	private volatile boolean closed = false;
+	private volatile IOException lastError;
+
+	/* Only written by the graph, with its lock held */
+	private volatile long droppedSamples = 0;
+
+	/**
+	 * Create a recorder that writes into a directory. The first file is
+	 * created straight away.
+	 *
+	 * @param directory The directory to write the log files into.
+	 * @param prefix The start of the name of each log file.
+	 * @param maxFileBytes The size a file may reach before a new one is
+	 * started.
+	 * @throws FileAlreadyExistsException If the directory already holds
+	 * a log with this prefix.
+	 * @throws IOException If the first file cannot be created.
+	 */
+	public StreamRecorder(Path directory, String prefix, long maxFileBytes) throws IOException {
+		if (maxFileBytes < FILE_HEADER + BUFFER_SIZE) {
+			throw new IllegalArgumentException("Files must hold at least " +
+																				 (FILE_HEADER + BUFFER_SIZE) + " bytes");
+		}
+
+		this.directory = directory;
+		this.prefix = prefix;
+		this.maxFileBytes = maxFileBytes;
+		openNextFile();
+
+		for (int i = 0; i < BUFFERS - 1; i++) {
+			free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+		}
+		current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		writer = new Thread(new Runnable() {
+				public void run() {
+					write();
+				}
+			}, "StreamRecorder writer");
+		writer.setDaemon(true);
+		writer.start();
+
+		drainThread = new Thread(new Runnable() {
+				public void run() {
+					drainPeriodically();
+				}
+			}, "StreamRecorder drain");
+		drainThread.setDaemon(true);
+		drainThread.start();
+	}
+
+	/**
+	 * Set the task that moves the pending samples of the graph being
+	 * recorded, or null when the recorder is detached. Called by the
+	 * graph with its lock held.
+	 */
+	void attach(Runnable drainTask) {
+		drainer = drainTask;
+	}
+
+	/**
+	 * Drain the attached graph every few milliseconds until the recorder
+	 * is closed. Runs on the drain thread.
+	 */
+	private void drainPeriodically() {
+		while (!closed) {
+			LockSupport.parkNanos(DRAIN_MILLIS * 1000000L);
+			Runnable task = drainer;
+			if (task != null && !closed) {
+				task.run();
+			}
+		}
+	}
+
+	/**
+	 * Get the name of a log file.
+	 *
+	 * @param prefix The start of the name of each log file.
+	 * @param number The sequence number of the file.
+	 */
+	static String fileName(String prefix, int number) {
+		return String.format("%s-%06d%s", prefix, number, SUFFIX);
+	}
+
+	/**
+	 * Record a sample in the current block, starting a block if needed.
+	 * Called by the graph with its lock held.
+	 */
+	void record(double value) {
+		if (!inBlock) {
+			long now = System.nanoTime();
+			if (current != null &&
+					(current.remaining() < BLOCK_HEADER + 8 ||
+					 (current.position() > 0 && now - bufferStarted > FLUSH_NANOS))) {
+				handOff();
+			}
+			if (current == null) {
+				current = free.poll();
+				if (current == null) {
+					droppedSamples++;
+					return;
+				}
+				current.clear();
+			}
+			if (current.position() == 0) {
+				bufferStarted = now;
+			}
+
+			blockStart = current.position();
+			blockCount = 0;
+			current.putLong(now);
+			current.putInt(0);
+			inBlock = true;
+		}
+
+		current.putDouble(value);
+		blockCount++;
+
+		if (current.remaining() < 8) {
+			endBlock();
+		}
+	}
+
+	/**
+	 * Finish the current block, if there is one. Called by the graph
+	 * with its lock held, after each batch of samples.
+	 */
+	void endBlock() {
+		if (inBlock) {
+			current.putInt(blockStart + 8, blockCount);
+			inBlock = false;
+		}
+	}
+
+	/**
+	 * Write out everything recorded so far and stop the writer. Detach
+	 * the recorder from its graph first, so no more samples arrive.
+	 *
+	 * @throws IOException If a file could not be written or closed.
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		LockSupport.unpark(drainThread);
+
+		endBlock();
+		try {
+			if (current != null && current.position() > 0) {
+				current.flip();
+				full.put(current);
+			}
+			full.put(ByteBuffer.allocate(0));
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing the recorder", e);
+		}
+
+		if (lastError != null) {
+			throw lastError;
+		}
+	}
+
+	/**
+	 * Get the last error raised while writing, or null if every block
+	 * has been written. Once a new file could not be started, such as
+	 * when one with the same name already exists, nothing more is
+	 * written.
+	 */
+	public IOException getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Get the number of samples that were not recorded because the disk
+	 * had fallen behind and no buffer was free.
+	 */
+	public long getDroppedSamples() {
+		return droppedSamples;
+	}
+
+	/**
+	 * Queue the current buffer for writing and take a free one, if there
+	 * is one. Never waits: the full queue has room for every buffer, and
+	 * when no buffer is free the current buffer is left null.
+	 */
+	private void handOff() {
+		current.flip();
+		full.offer(current);
+		current = free.poll();
+		if (current != null) {
+			current.clear();
+		}
+	}
+
+	/**
+	 * Write full buffers until told to stop. Runs on the writer thread.
+	 */
+	private void write() {
+		try {
+			while (true) {
+				ByteBuffer buffer = full.take();
+				if (buffer.remaining() == 0) {
+					break;
+				}
+
+				try {
+					if (channel != null && fileBytes + buffer.remaining() > maxFileBytes) {
+						openNextFile();
+					}
+					if (channel == null) {
+						continue;
+					}
+					fileBytes += buffer.remaining();
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+				} catch (IOException e) {
+					lastError = e;
+				} finally {
+					buffer.clear();
+					free.offer(buffer);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			lastError = e;
+		}
+	}
+
+	/**
+	 * Close the current file, if any, and start the next one with its
+	 * header. If the next file cannot be started, the channel is left
+	 * null.
+	 */
+	private void openNextFile() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+
+		fileNumber++;
+		Path file = directory.resolve(fileName(prefix, fileNumber));
+		FileChannel next;
+		try {
+			next = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		} catch (FileAlreadyExistsException e) {
+			throw new FileAlreadyExistsException(file.toString(), null,
+																					 "A log with this prefix already exists");
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+		header.putInt(MAGIC);
+		header.putLong(session);
+		header.putInt(fileNumber);
+		header.flip();
+		try {
+			while (header.hasRemaining()) {
+				next.write(header);
+			}
+		} catch (IOException e) {
+			next.close();
+			throw e;
+		}
+		channel = next;
+		fileBytes = FILE_HEADER;
+	}
+}
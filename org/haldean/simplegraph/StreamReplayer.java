@@ -0,0 +1,174 @@
+package org.haldean.simplegraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds samples recorded by a {@link StreamRecorder} back into a
+ * streaming graph, to reproduce what it showed. The log can be replayed
+ * at the speed it was recorded, at a multiple of that speed, or as fast
+ * as the graph takes samples.
+ *
+ * Each recorded block is added to the graph in one batch, at the time
+ * its timestamp falls due relative to the first block. A block cut off
+ * at the end of a file, as when the recording process died, is skipped.
+ * Replay stops at the first file that does not continue the recording
+ * of the first file, such as one left behind by another recording.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public class StreamReplayer {
+	/** A speed that replays every sample without waiting. */
+	public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+	private final List<Path> files;
+
+	/**
+	 * Create a replayer for the files written by a recorder with the
+	 * given directory and prefix, in the order they were written.
+	 *
+	 * @param directory The directory holding the log files.
+	 * @param prefix The prefix the recorder was given.
+	 * @throws IOException If there is no log with that prefix.
+	 */
+	public StreamReplayer(Path directory, String prefix) throws IOException {
+		files = new ArrayList<Path>();
+		for (int number = 1; ; number++) {
+			Path file = directory.resolve(StreamRecorder.fileName(prefix, number));
+			if (!Files.exists(file)) {
+				break;
+			}
+			files.add(file);
+		}
+
+		if (files.isEmpty()) {
+			throw new IOException("No log named " + StreamRecorder.fileName(prefix, 1) +
+														" in " + directory);
+		}
+	}
+
+	/**
+	 * Create a replayer for a list of log files, replayed in order.
+	 *
+	 * @param files The log files to replay.
+	 */
+	public StreamReplayer(List<Path> files) {
+		this.files = new ArrayList<Path>(files);
+	}
+
+	/**
+	 * Add every recorded sample to a graph, waiting between blocks to
+	 * keep to the recorded timing. Returns once the whole log has been
+	 * replayed.
+	 *
+	 * @param graph The graph to feed.
+	 * @param speed How many times faster than recorded to replay: 1 for
+	 * the recorded speed, or {@link #AS_FAST_AS_POSSIBLE}.
+	 * @return The number of samples replayed.
+	 * @throws IOException If a file cannot be read or is not a log.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public long replay(DoubleStreamingGraphComponent graph, double speed)
+		throws IOException, InterruptedException {
+		if (!(speed > 0)) {
+			throw new IllegalArgumentException("The speed must be positive");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(StreamRecorder.BUFFER_SIZE);
+		double[] samples = new double[StreamRecorder.BUFFER_SIZE / 8];
+		boolean started = false;
+		long firstRecorded = 0;
+		long firstReplayed = 0;
+		long replayed = 0;
+		long session = 0;
+		int fileNumber = 0;
+
+		for (Path file : files) {
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+			try {
+				/* Start each file with an empty buffer in read mode */
+				buffer.clear();
+				buffer.limit(0);
+				if (!fill(channel, buffer, StreamRecorder.FILE_HEADER) ||
+						buffer.getInt() != StreamRecorder.MAGIC) {
+					throw new IOException(file + " is not a sample log");
+				}
+
+				/* Stop at a file of another recording, or after a gap */
+				long fileSession = buffer.getLong();
+				int number = buffer.getInt();
+				if (fileNumber == 0) {
+					session = fileSession;
+				} else if (fileSession != session || number != fileNumber + 1) {
+					break;
+				}
+				fileNumber = number;
+
+				while (fill(channel, buffer, StreamRecorder.BLOCK_HEADER)) {
+					long recorded = buffer.getLong();
+					int count = buffer.getInt();
+					if (count < 0 || count > samples.length) {
+						throw new IOException(file + " holds a corrupt block");
+					}
+					if (!fill(channel, buffer, 8 * count)) {
+						/* The recording was cut off part way through a block */
+						break;
+					}
+					for (int i = 0; i < count; i++) {
+						samples[i] = buffer.getDouble();
+					}
+
+					if (!started) {
+						started = true;
+						firstRecorded = recorded;
+						firstReplayed = System.nanoTime();
+					} else if (speed != AS_FAST_AS_POSSIBLE) {
+						long due = firstReplayed + (long) ((recorded - firstRecorded) / speed);
+						for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+							LockSupport.parkNanos(wait);
+							if (Thread.interrupted()) {
+								throw new InterruptedException();
+							}
+						}
+					}
+
+					graph.addValues(samples, 0, count);
+					replayed += count;
+				}
+			} finally {
+				channel.close();
+			}
+		}
+		return replayed;
+	}
+
+	/**
+	 * Make sure the buffer has at least some bytes left to read, reading
+	 * more from the channel if needed. The buffer is kept in read mode.
+	 *
+	 * @return False if the file ended before there were that many bytes.
+	 */
+	private static boolean fill(FileChannel channel, ByteBuffer buffer, int bytes)
+		throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return true;
+		}
+
+		buffer.compact();
+		while (buffer.position() < bytes) {
+			if (channel.read(buffer) < 0) {
+				buffer.flip();
+				return false;
+			}
+		}
+		buffer.flip();
+		return true;
+	}
+}
@@ -0,0 +1,157 @@
+package org.haldean.simplegraph;
+
+/**
+ * A ring buffer of timestamped samples, kept in timestamp order. The
+ * timestamps and values live in parallel primitive arrays, so adding a
+ * sample never allocates once the buffer has grown to fit the window.
+ *
+ * Because the timestamps are sorted, the samples inside any span of
+ * time are found by binary search. Samples that arrive late are
+ * inserted in their place; they are normally only a few samples behind,
+ * so only the newest few samples have to be shifted.
+ *
+ * This class is not thread-safe; callers are expected to hold a lock
+ * on the buffer while they use it.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+class TimedSampleBuffer {
+	private long[] times;
+	private double[] values;
+
+	/* The physical index of the oldest sample in the buffer */
+	private int head = 0;
+
+	/* The number of samples currently stored */
+	private int size = 0;
+
+	/**
+	 * Create a new, empty {@link TimedSampleBuffer}.
+	 *
+	 * @param capacity The number of samples to make room for at first.
+	 * The buffer grows as needed.
+	 */
+	TimedSampleBuffer(int capacity) {
+		times = new long[Math.max(1, capacity)];
+		values = new double[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Get the number of samples stored in the buffer.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Get the timestamp of a sample.
+	 *
+	 * @param i The index of the sample, where zero is the oldest.
+	 */
+	long time(int i) {
+		return times[slot(i)];
+	}
+
+	/**
+	 * Get the value of a sample.
+	 *
+	 * @param i The index of the sample, where zero is the oldest.
+	 */
+	double value(int i) {
+		return values[slot(i)];
+	}
+
+	/**
+	 * Add a sample, doubling the capacity of the buffer if it is full.
+	 *
+	 * @param time The timestamp of the sample.
+	 * @param value The value of the sample.
+	 */
+	void add(long time, double value) {
+		if (size == times.length) {
+			resize(2 * times.length);
+		}
+
+		/* Shift any newer samples up to make room */
+		int i = size;
+		while (i > 0 && times[slot(i - 1)] > time) {
+			times[slot(i)] = times[slot(i - 1)];
+			values[slot(i)] = values[slot(i - 1)];
+			i--;
+		}
+
+		times[slot(i)] = time;
+		values[slot(i)] = value;
+		size++;
+	}
+
+	/**
+	 * Find the first sample at or after a time.
+	 *
+	 * @param time The time to search for.
+	 * @return The index of the first sample whose timestamp is not
+	 * before the time, or the size of the buffer if there is none.
+	 */
+	int firstAtOrAfter(long time) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (times[slot(middle)] < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Remove every sample older than a time.
+	 *
+	 * @param time The timestamp of the oldest sample to keep.
+	 */
+	void evictBefore(long time) {
+		int evicted = firstAtOrAfter(time);
+		head = slot(evicted);
+		size -= evicted;
+	}
+
+	/**
+	 * Copy a run of samples to the start of two arrays.
+	 *
+	 * @param from The index of the first sample to copy.
+	 * @param to The index just after the last sample to copy.
+	 * @param timeDestination The array to copy the timestamps into.
+	 * @param valueDestination The array to copy the values into.
+	 */
+	void copyTo(int from, int to, long[] timeDestination, double[] valueDestination) {
+		int start = slot(from);
+		int length = to - from;
+		int firstRun = Math.min(length, times.length - start);
+		System.arraycopy(times, start, timeDestination, 0, firstRun);
+		System.arraycopy(times, 0, timeDestination, firstRun, length - firstRun);
+		System.arraycopy(values, start, valueDestination, 0, firstRun);
+		System.arraycopy(values, 0, valueDestination, firstRun, length - firstRun);
+	}
+
+	private void resize(int capacity) {
+		long[] resizedTimes = new long[capacity];
+		double[] resizedValues = new double[capacity];
+		copyTo(0, size, resizedTimes, resizedValues);
+		times = resizedTimes;
+		values = resizedValues;
+		head = 0;
+	}
+
+	/**
+	 * Get the physical slot of the i'th sample from the oldest.
+	 */
+	private int slot(int i) {
+		int slot = head + i;
+		if (slot >= times.length) {
+			slot -= times.length;
+		}
+		return slot;
+	}
+}
@@ -0,0 +1,458 @@
+package org.haldean.simplegraph;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseMotionListener;
+
+/**
+ *  A component which draws a graph of real-time data that arrives at
+ *  irregular times. Each sample is added with its own timestamp, and
+ *  the horizontal axis is time rather than sample count, so jitter and
+ *  gaps in the feed show up as they happened instead of being squeezed
+ *  onto an even grid.
+ *
+ *  The graph shows a fixed window of time, such as the last thirty
+ *  seconds, ending at the newest sample. Samples older than the window
+ *  are discarded as new ones arrive. The Y axis is scaled to fit the
+ *  visible samples, together with any bounds set with
+ *  {@link #setMaximum(double)} and {@link #setMinimum(double)}.
+ *
+ *  @author Will Brown (will.h.brown@gmail.com)
+ */
+public class TimedStreamingGraphComponent extends Component {
+	/* The number of samples room is made for at first */
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	private final TimedSampleBuffer series = new TimedSampleBuffer(INITIAL_CAPACITY);
+
+	/* The length of the visible window, in nanoseconds */
+	private long window;
+
+	/* The timestamp of the first sample ever added, which tick labels
+	 * count from */
+	private boolean hasOrigin = false;
+	private long origin;
+
+	/* The timestamp of the newest sample, which is the right edge of the
+	 * graph */
+	private long newest;
+
+	/* The bounds set with setMaximum and setMinimum */
+	private double maximumBound = 1;
+	private double minimumBound = -1;
+
+	private int width;
+	private int height;
+
+	/* Area left at the top and bottom to ensure the graph never quite
+	 * touches the edge, as a percentage of the value range */
+	private double margin = 0.1;
+
+	/* A copy of the visible samples and the bounds taken at the start of
+	 * each frame, so the series lock is not held while drawing. Times
+	 * are relative to the origin */
+	private long[] frameTimes = new long[0];
+	private double[] frameValues = new double[0];
+	private int frameSize = 0;
+	private long frameStart;
+	private long frameWindow;
+	private double frameMaximum = 1;
+	private double frameMinimum = -1;
+
+	/* The scale factors of the current frame */
+	private double pixelsPerUnit;
+	private double pixelsPerNano;
+	private int frameY0;
+
+	/* The points of the polyline drawn each frame, reused between
+	 * frames */
+	private int[] xs = new int[0];
+	private int[] ys = new int[0];
+
+	/* The configuration object that holds the color, font and name of
+	 * the graph */
+	private GraphConfiguration config;
+
+	/* The currently-moused-over x-value */
+	private int currentFocusVertical;
+
+	/* The sample in the frame the inspector was last drawn on, or -1 */
+	private int inspectedSample = -1;
+
+	/* Formats the inspector and tick labels without allocating */
+	private final LabelFormatter labels = new LabelFormatter();
+
+	/* The cached background and data, which the inspector is drawn over.
+	 * The version is bumped whenever a sample arrives or the scale
+	 * changes */
+	private PlotLayer plotLayer = new PlotLayer();
+	private long plotVersion = 0;
+	private long frameVersion = -1;
+	private final CachedImage.Renderer plotRenderer = new CachedImage.Renderer() {
+			public void render(Graphics2D g) {
+				GraphBackground.renderTime(g, labels, config, width, height, frameY0,
+																	 frameStart, frameWindow);
+
+				g.setColor(config.getLineColor());
+				paintSegments(g);
+			}
+		};
+
+	/**
+	 * Create a new {@link TimedStreamingGraphComponent} with the default
+	 * {@link GraphConfiguration}.
+	 *
+	 * @param windowNanos The length of time shown across the graph, in
+	 * nanoseconds.
+	 */
+	public TimedStreamingGraphComponent(long windowNanos) {
+		this(windowNanos, new GraphConfiguration());
+	}
+
+	/**
+	 * Create a new {@link TimedStreamingGraphComponent} with the
+	 * specified {@link GraphConfiguration}.
+	 *
+	 * @param windowNanos The length of time shown across the graph, in
+	 * nanoseconds.
+	 * @param gc The {@link GraphConfiguration} to use.
+	 */
+	public TimedStreamingGraphComponent(long windowNanos, GraphConfiguration gc) {
+		if (windowNanos <= 0) {
+			throw new IllegalArgumentException("The time window must be positive");
+		}
+
+		window = windowNanos;
+		config = gc;
+		GraphMouseHandler mouseHandler = new GraphMouseHandler();
+		addMouseListener(mouseHandler);
+		addMouseMotionListener(mouseHandler);
+	}
+
+	/**
+	 * Manually set the maximum. If a visible sample is larger than this
+	 * maximum, the graph scales to fit it.
+	 *
+	 * @param max The lower bound for the maximum
+	 */
+	public void setMaximum(double max) {
+		synchronized (series) {
+			maximumBound = max;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Manually set the minimum. If a visible sample is smaller than this
+	 * minimum, the graph scales to fit it.
+	 *
+	 * @param min The upper bound for the minimum
+	 */
+	public void setMinimum(double min) {
+		synchronized (series) {
+			minimumBound = min;
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Set the {@link GraphConfiguration} of the graph.
+	 *
+	 * @param gc The configuration to assign.
+	 */
+	public void setGraphConfiguration(GraphConfiguration gc) {
+		config = gc;
+	}
+
+	/**
+	 * Get the {@link GraphConfiguration} of this component.
+	 */
+	public GraphConfiguration getGraphConfiguration() {
+		return config;
+	}
+
+	/**
+	 * Set the length of time shown across the graph. Samples are only
+	 * kept for as long as they are visible, so widening the window does
+	 * not bring back samples that have already been discarded.
+	 *
+	 * @param windowNanos The length of the window, in nanoseconds.
+	 */
+	public void setTimeWindow(long windowNanos) {
+		if (windowNanos <= 0) {
+			throw new IllegalArgumentException("The time window must be positive");
+		}
+
+		synchronized (series) {
+			window = windowNanos;
+			series.evictBefore(newest - window);
+			plotVersion++;
+		}
+		repaint();
+	}
+
+	/**
+	 * Get the length of time shown across the graph, in nanoseconds.
+	 */
+	public long getTimeWindow() {
+		synchronized (series) {
+			return window;
+		}
+	}
+
+	/**
+	 * Add a timestamped value to the data series. Timestamps may come
+	 * from any clock, such as {@link System#nanoTime()}, as long as every
+	 * sample uses the same one. Samples may arrive slightly out of order;
+	 * each is drawn at its own time. Samples older than the window are
+	 * ignored.
+	 *
+	 * @param timestampNanos The time the value was sampled, in
+	 * nanoseconds.
+	 * @param value The value to add
+	 */
+	public void addValue(long timestampNanos, double value) {
+		synchronized (series) {
+			if (!hasOrigin) {
+				hasOrigin = true;
+				origin = timestampNanos;
+				newest = timestampNanos;
+			}
+
+			if (timestampNanos > newest) {
+				newest = timestampNanos;
+				series.evictBefore(newest - window);
+			} else if (timestampNanos < newest - window) {
+				return;
+			}
+
+			series.add(timestampNanos, value);
+			plotVersion++;
+		}
+
+		RenderScheduler.repaint(this, config.getTargetFrameRate());
+	}
+
+	/**
+	 * Convert a value to a canvas pixel location, using the scale
+	 * computed at the start of the current frame.
+	 *
+	 * @param p The sample value
+	 * @return The number of pixels between the top of the graph and the
+	 * horizontal line representing the given sample value
+	 */
+	private int pointToY(double p) {
+		return (int) ((frameMaximum - (1 - margin) * p) * pixelsPerUnit);
+	}
+
+	/**
+	 * Convert a time to a canvas pixel location.
+	 *
+	 * @param time The time, in nanoseconds since the origin
+	 * @return The pixel X corresponding to that time
+	 */
+	private int timeToX(long time) {
+		return (int) ((time - frameStart) * pixelsPerNano);
+	}
+
+	/**
+	 * Paints the graph onto the provided graphics object
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	public void paint(Graphics canvas) {
+		/* Resize events are not delivered to offscreen graphs */
+		width = getWidth();
+		height = getHeight();
+
+		/* Copy the visible samples out of the series, so that the lock is
+		 * released before any drawing happens */
+		synchronized (series) {
+			if (plotVersion != frameVersion) {
+				frameVersion = plotVersion;
+				frameWindow = window;
+				frameStart = newest - origin - window;
+
+				int first = series.firstAtOrAfter(newest - window);
+				frameSize = series.size() - first;
+				if (frameTimes.length < frameSize) {
+					frameTimes = new long[Math.max(frameSize, 2 * frameTimes.length)];
+					frameValues = new double[frameTimes.length];
+				}
+				series.copyTo(first, series.size(), frameTimes, frameValues);
+
+				frameMaximum = maximumBound;
+				frameMinimum = minimumBound;
+				for (int i = 0; i < frameSize; i++) {
+					frameTimes[i] -= origin;
+					frameMaximum = Math.max(frameMaximum, frameValues[i]);
+					frameMinimum = Math.min(frameMinimum, frameValues[i]);
+				}
+			}
+		}
+
+		/* Hoist the scale factors out of the drawing loops */
+		pixelsPerUnit = height / (frameMaximum - frameMinimum);
+		pixelsPerNano = (double) width / frameWindow;
+
+		/* The Y component of the X axis can shift based on scaling, so
+		 * we calculate it once to save computation */
+		frameY0 = pointToY(0);
+
+		plotLayer.paint(this, canvas, config, width, height, frameVersion, plotRenderer);
+
+		if (config.getEnableInspector()) {
+			paintInspector(canvas);
+		}
+	}
+
+	/**
+	 * Paints the visible samples as a single polyline. Samples that land
+	 * on the same pixel column are reduced to the first, lowest, highest
+	 * and last of them, which draws the same pixels with at most four
+	 * points per column however dense the samples are.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	private void paintSegments(Graphics canvas) {
+		if (frameSize == 0) {
+			return;
+		}
+
+		if (xs.length < 4 * width + 4) {
+			xs = new int[4 * width + 4];
+			ys = new int[xs.length];
+		}
+
+		int count = 0;
+		int i = 0;
+		while (i < frameSize) {
+			int x = timeToX(frameTimes[i]);
+			int first = pointToY(frameValues[i]);
+			int low = first;
+			int high = first;
+			int last = first;
+			for (i++; i < frameSize && timeToX(frameTimes[i]) == x; i++) {
+				last = pointToY(frameValues[i]);
+				low = Math.max(low, last);
+				high = Math.min(high, last);
+			}
+
+			count = addPoint(count, x, first);
+			count = addPoint(count, x, high);
+			count = addPoint(count, x, low);
+			count = addPoint(count, x, last);
+		}
+
+		if (count == 1) {
+			canvas.drawLine(xs[0], ys[0], xs[0], ys[0]);
+		} else {
+			canvas.drawPolyline(xs, ys, count);
+		}
+	}
+
+	/**
+	 * Append a point to the polyline, unless it repeats the last one.
+	 *
+	 * @return The new number of points.
+	 */
+	private int addPoint(int count, int x, int y) {
+		if (count > 0 && xs[count - 1] == x && ys[count - 1] == y) {
+			return count;
+		}
+		xs[count] = x;
+		ys[count] = y;
+		return count + 1;
+	}
+
+	/**
+	 * Find the sample the inspector shows for a pixel column: the sample
+	 * nearest in time to it, found by binary search.
+	 *
+	 * @param x The pixel column under the mouse
+	 * @return The index of the sample in the frame, or -1 if there is none
+	 */
+	private int sampleAt(int x) {
+		if (frameSize == 0 || x < 0 || x >= width || width <= 0) {
+			return -1;
+		}
+
+		long time = frameStart + (long) (x / pixelsPerNano);
+		int low = 0;
+		int high = frameSize;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (frameTimes[middle] < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		if (low == frameSize ||
+				(low > 0 && time - frameTimes[low - 1] < frameTimes[low] - time)) {
+			low--;
+		}
+		return low;
+	}
+
+	/**
+	 * Paints the inspector for the sample under the mouse over the plot:
+	 * a circle around the sample, and lines to each axis labelled with
+	 * the sample's value and time.
+	 *
+	 * @param canvas The graphics object to paint onto
+	 */
+	private void paintInspector(Graphics canvas) {
+		int i = sampleAt(currentFocusVertical);
+		inspectedSample = i;
+		if (i < 0) {
+			return;
+		}
+
+		int x = timeToX(frameTimes[i]);
+		int y = pointToY(frameValues[i]);
+
+		canvas.setFont(config.getLabelFont());
+		canvas.setColor(config.getInspectorColor());
+
+		GraphBackground.drawMarker(canvas, x, y);
+
+		canvas.drawLine(x, y, 0, y);
+		labels.drawDouble(canvas, frameValues[i], 1, y - 2);
+		canvas.drawLine(x, y, x, frameY0);
+		labels.drawSeconds(canvas, frameTimes[i], x + 2, frameY0 - 3);
+	}
+
+	private class GraphMouseHandler extends MouseAdapter implements MouseMotionListener {
+		public void mouseExited(MouseEvent e) {
+			moveFocus(-1);
+		}
+
+		public void mouseMoved(MouseEvent e) {
+			moveFocus(e.getX());
+		}
+
+		/**
+		 * Move the inspector, repainting only if it lands on a different
+		 * sample. The plot itself is not redrawn.
+		 */
+		private void moveFocus(int x) {
+			if (config.getEnableInspector()) {
+				currentFocusVertical = x;
+				if (sampleAt(x) != inspectedSample) {
+					repaint();
+				}
+			}
+		}
+
+		public void mouseDragged(MouseEvent e) {
+			;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package org.haldean.simplegraph;
+
+import java.awt.Graphics2D;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+
+/**
+ * Checks that a static graph of a long series can be zoomed in to its
+ * last few samples. Pixel positions used to be computed from the start
+ * of the series, and overflowed an int once the sample index times the
+ * pixels per sample passed 2^31, which made painting loop forever.
+ *
+ * Each paint must finish within a timeout, and the zoomed-in line must
+ * be drawn across the middle of the graph.
+ *
+ * Run with -Djava.awt.headless=true; exits with a non-zero status if a
+ * check fails.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public class ViewportTest {
+	private static final int SAMPLES = 10000000;
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 300;
+	private static final long TIMEOUT_MILLIS = 30000;
+
+	private static boolean failed = false;
+
+	public static void main(String args[]) {
+		Thread watchdog = new Thread(new Runnable() {
+				public void run() {
+					try {
+						Thread.sleep(TIMEOUT_MILLIS);
+					} catch (InterruptedException e) {
+						return;
+					}
+					System.err.println("Painting did not finish within " + TIMEOUT_MILLIS + " ms");
+					System.exit(1);
+				}
+			}, "ViewportTest watchdog");
+		watchdog.setDaemon(true);
+		watchdog.start();
+
+		double[] values = new double[SAMPLES];
+		for (int i=0; i<SAMPLES; i++) {
+			values[i] = i;
+		}
+		GraphConfiguration config = new GraphConfiguration("Viewport");
+		DoubleStaticGraphComponent graph = GraphFactory.forArray(values, config);
+		graph.setSize(WIDTH, HEIGHT);
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+		graph.setViewport(SAMPLES - 2, SAMPLES);
+		paint(graph, image);
+		checkLine("setViewport", image, config);
+
+		/* Zoom in with the wheel at the right edge until the viewport
+		 * stops shrinking */
+		graph.resetViewport();
+		paint(graph, image);
+		int visible = SAMPLES;
+		for (int step=0; step<200 && visible > 2; step++) {
+			graph.dispatchEvent(new MouseWheelEvent(graph, MouseWheelEvent.MOUSE_WHEEL, 0, 0,
+																							WIDTH, HEIGHT / 2, 0, false,
+																							MouseWheelEvent.WHEEL_UNIT_SCROLL, 1, -1));
+			paint(graph, image);
+			visible = graph.getViewportEnd() - graph.getViewportStart();
+		}
+		if (visible != 2 || graph.getViewportEnd() != SAMPLES) {
+			System.err.println("Wheel zoom stopped at [" + graph.getViewportStart() + ", " +
+												 graph.getViewportEnd() + ")");
+			failed = true;
+		}
+		checkLine("Wheel zoom", image, config);
+
+		if (failed) {
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	private static void paint(DoubleStaticGraphComponent graph, BufferedImage image) {
+		Graphics2D g = image.createGraphics();
+		graph.paint(g);
+		g.dispose();
+	}
+
+	/* The ramp runs corner to corner, so the middle column of the graph
+	 * must hold a pixel of the line */
+	private static void checkLine(String name, BufferedImage image, GraphConfiguration config) {
+		int line = config.getLineColor().getRGB();
+		for (int y=0; y<HEIGHT; y++) {
+			if (image.getRGB(WIDTH / 2, y) == line) {
+				return;
+			}
+		}
+		System.err.println(name + ": no line drawn across the middle of the graph");
+		failed = true;
+	}
+}
@@ -0,0 +1,158 @@
+package org.haldean.swing;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders components to PNG files in parallel, without a window. This
+ * works with java.awt.headless=true: each component is given the
+ * requested size, painted into an offscreen image and encoded, all on a
+ * fork-join pool, so many graphs are painted and encoded at once.
+ *
+ * Images are pooled by size and reused once their PNG has been written,
+ * so a batch of same-sized graphs only allocates as many images as
+ * there are worker threads.
+ *
+ * A component must not be shown on screen while it is being rendered,
+ * and is locked for the duration of its task, so submitting the same
+ * component twice renders it twice in turn.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public class BatchRenderer {
+  private final ForkJoinPool pool;
+
+  /* Idle images, keyed by (width << 32 | height) */
+  private final Map<Long, Queue<BufferedImage>> images =
+    new ConcurrentHashMap<Long, Queue<BufferedImage>>();
+
+  /**
+   * Create a renderer that runs on the common fork-join pool.
+   */
+  public BatchRenderer() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create a renderer that runs on the given pool.
+   *
+   * @param pool The pool to paint and encode on.
+   */
+  public BatchRenderer(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Render a component to a PNG file in the background.
+   *
+   * @param component The component to render.
+   * @param width The width of the image in pixels.
+   * @param height The height of the image in pixels.
+   * @param file The file to write.
+   * @return A future that completes with the file once it has been
+   * written, or exceptionally if it could not be.
+   */
+  public CompletableFuture<File> submit(final Component component,
+                                        final int width, final int height,
+                                        final File file) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+    }
+
+    return CompletableFuture.supplyAsync(new Supplier<File>() {
+        public File get() {
+          BufferedImage image = acquire(width, height);
+          try {
+            paint(component, image);
+            ImageIO.write(image, "png", file);
+            return file;
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } finally {
+            release(image);
+          }
+        }
+      }, pool);
+  }
+
+  /**
+   * Render several components to PNG files in the background. The files
+   * are named by the pattern, which is formatted with the index of each
+   * component, such as "graph-%05d.png".
+   *
+   * @param components The components to render.
+   * @param width The width of each image in pixels.
+   * @param height The height of each image in pixels.
+   * @param directory The directory to write the files into.
+   * @param pattern The format of the file names.
+   * @return One future per component, in order.
+   */
+  public List<CompletableFuture<File>> submitAll(List<? extends Component> components,
+                                                 int width, int height,
+                                                 File directory, String pattern) {
+    List<CompletableFuture<File>> futures =
+      new ArrayList<CompletableFuture<File>>(components.size());
+    for (int i = 0; i < components.size(); i++) {
+      File file = new File(directory, String.format(pattern, i));
+      futures.add(submit(components.get(i), width, height, file));
+    }
+    return futures;
+  }
+
+  /**
+   * Render a component at the size of the image.
+   */
+  private static void paint(Component component, BufferedImage image) {
+    Graphics2D g = image.createGraphics();
+    try {
+      synchronized (component) {
+        component.setSize(image.getWidth(), image.getHeight());
+
+        Color background = component.getBackground();
+        g.setBackground(background == null ? Color.WHITE : background);
+        g.clearRect(0, 0, image.getWidth(), image.getHeight());
+        component.paint(g);
+      }
+    } finally {
+      g.dispose();
+    }
+  }
+
+  private BufferedImage acquire(int width, int height) {
+    Queue<BufferedImage> idle = images.get(key(width, height));
+    BufferedImage image = idle == null ? null : idle.poll();
+    if (image == null) {
+      image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+    return image;
+  }
+
+  private void release(BufferedImage image) {
+    Long key = key(image.getWidth(), image.getHeight());
+    Queue<BufferedImage> idle = images.get(key);
+    if (idle == null) {
+      images.putIfAbsent(key, new ConcurrentLinkedQueue<BufferedImage>());
+      idle = images.get(key);
+    }
+    idle.offer(image);
+  }
+
+  private static Long key(int width, int height) {
+    return ((long) width << 32) | height;
+  }
+}
@@ -0,0 +1,242 @@
+package org.haldean.swing;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Records a component as a series of numbered PNG frames, for making
+ * time-lapses of live graphs. The component is painted into an image on
+ * the event dispatch thread at a fixed interval, and the images are
+ * written by a background thread, so the disk never holds up the UI.
+ *
+ * A fixed number of images is recycled between the two threads. If
+ * every image is still waiting to be written when the next frame is
+ * due, that frame is dropped and counted instead of blocking painting.
+ * Frames are numbered in the order they are captured, so dropped
+ * frames do not leave gaps in the numbering.
+ *
+ * @author Will Brown (will.h.brown@gmail.com)
+ */
+public class FrameRecorder {
+  /* A painted frame on its way to the encoder. A frame without an
+   * image tells the encoder to stop */
+  private static class Frame {
+    final BufferedImage image;
+    final long number;
+
+    Frame(BufferedImage image, long number) {
+      this.image = image;
+      this.number = number;
+    }
+  }
+
+  private final Component component;
+  private final File directory;
+  private final String pattern;
+  private final Timer timer;
+
+  /* Images ready to be painted into, and frames waiting to be written */
+  private final BlockingQueue<BufferedImage> free;
+  private final BlockingQueue<Frame> queue;
+
+  private Thread encoder;
+
+  /* The number of the next captured frame; only touched on the event
+   * dispatch thread */
+  private long nextFrame = 0;
+
+  /* Frames are dropped on both threads, but only written by the
+   * encoder */
+  private final AtomicLong framesDropped = new AtomicLong();
+  private volatile long framesWritten = 0;
+  private volatile IOException lastError;
+
+  /**
+   * Create a recorder for a component. Nothing is recorded until
+   * {@link #start()} is called.
+   *
+   * @param component The component to record.
+   * @param directory The directory to write frames into.
+   * @param pattern The format of the frame file names, which is given
+   * the frame number, such as "frame-%06d.png".
+   * @param intervalMillis The time between frames, in milliseconds.
+   * @param buffers The number of frames that can wait to be written
+   * before new frames are dropped.
+   */
+  public FrameRecorder(Component component, File directory, String pattern,
+                       int intervalMillis, int buffers) {
+    if (buffers < 1) {
+      throw new IllegalArgumentException("A recorder needs at least one buffer");
+    }
+
+    this.component = component;
+    this.directory = directory;
+    this.pattern = pattern;
+    free = new ArrayBlockingQueue<BufferedImage>(buffers);
+    queue = new ArrayBlockingQueue<Frame>(buffers + 1);
+    for (int i = 0; i < buffers; i++) {
+      free.add(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+    }
+
+    timer = new Timer(intervalMillis, new ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+          capture();
+        }
+      });
+    timer.setCoalesce(true);
+  }
+
+  /**
+   * Start recording. Frames are captured until {@link #stop()} is
+   * called.
+   */
+  public synchronized void start() {
+    if (encoder != null) {
+      return;
+    }
+
+    encoder = new Thread(new Runnable() {
+        public void run() {
+          encode();
+        }
+      }, "FrameRecorder encoder");
+    encoder.setDaemon(true);
+    encoder.start();
+    timer.start();
+  }
+
+  /**
+   * Stop recording, and wait for every captured frame to be written.
+   *
+   * @throws InterruptedException If interrupted while waiting for the
+   * encoder.
+   */
+  public synchronized void stop() throws InterruptedException {
+    if (encoder == null) {
+      return;
+    }
+
+    timer.stop();
+
+    /* A capture may already be queued on the event dispatch thread, so
+     * let it finish before telling the encoder to stop */
+    if (!SwingUtilities.isEventDispatchThread()) {
+      try {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+            }
+          });
+      } catch (InvocationTargetException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    queue.put(new Frame(null, -1));
+    encoder.join();
+    encoder = null;
+  }
+
+  /**
+   * Get the number of frames written to disk so far.
+   */
+  public long getFramesWritten() {
+    return framesWritten;
+  }
+
+  /**
+   * Get the number of frames dropped because the encoder could not keep
+   * up, or because they could not be written.
+   */
+  public long getFramesDropped() {
+    return framesDropped.get();
+  }
+
+  /**
+   * Get the last error raised while writing a frame, or null if every
+   * frame has been written.
+   */
+  public IOException getLastError() {
+    return lastError;
+  }
+
+  /**
+   * Paint the component into a free image and queue it for writing.
+   * Runs on the event dispatch thread, and never blocks.
+   */
+  private void capture() {
+    /* Ignore a tick that was already queued when recording stopped */
+    if (!timer.isRunning()) {
+      return;
+    }
+
+    int width = component.getWidth();
+    int height = component.getHeight();
+    if (width <= 0 || height <= 0) {
+      return;
+    }
+
+    BufferedImage image = free.poll();
+    if (image == null) {
+      framesDropped.incrementAndGet();
+      return;
+    }
+
+    if (image.getWidth() != width || image.getHeight() != height) {
+      image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    Graphics2D g = image.createGraphics();
+    try {
+      Color background = component.getBackground();
+      g.setBackground(background == null ? Color.WHITE : background);
+      g.clearRect(0, 0, width, height);
+      component.paint(g);
+    } finally {
+      g.dispose();
+    }
+
+    /* There are never more frames in flight than free images, so this
+     * always fits */
+    queue.offer(new Frame(image, nextFrame++));
+  }
+
+  /**
+   * Write queued frames until told to stop. Runs on the encoder thread.
+   */
+  private void encode() {
+    try {
+      while (true) {
+        Frame frame = queue.take();
+        if (frame.image == null) {
+          return;
+        }
+
+        try {
+          File file = new File(directory, String.format(pattern, frame.number));
+          ImageIO.write(frame.image, "png", file);
+          framesWritten++;
+        } catch (IOException e) {
+          lastError = e;
+          framesDropped.incrementAndGet();
+        } finally {
+          free.offer(frame.image);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}